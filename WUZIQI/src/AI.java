@@ -1,11 +1,23 @@
-import java.util.Arrays;
-
 /**
  * Stronger Gobang AI with:
- * - Iterative deepening + time limits per difficulty
- * - Alpha-beta with transposition table
- * - Improved move ordering and pattern-based evaluation
- * - Ban-hand (Renju-style) rules for black: overline, double-three, double-four
+ * - Iterative deepening + time limits per difficulty, adapted per move: forced
+ *   moves are played at once, a stable best move stops early, a score drop extends
+ *   the limit
+ * - VCF solver (continuous fours) before the main search, see ThreatSolver
+ * - VCT solver (fours and open threes) for own wins, and to drop root moves
+ *   that leave the opponent a forced win
+ * - Principal variation search with aspiration windows and transposition table
+ * - Late move reductions for quiet moves, extensions for fours and their forced replies
+ * - Threat quiescence at the leaves: pending fives, fours and blocks are played out
+ * - Optional Lazy SMP: helper threads search the same root through a shared table
+ * - Pondering support: a search without a deadline that a ponder hit converts
+ *   into a normal timed search (see EngineSession)
+ * - Bitboard position (see BitBoard) for line, neighbour and win queries
+ * - Move ordering by threat score, then killer moves and history
+ * - Pattern-based evaluation
+ * - Ban-hand (Renju-style) rules for black: overline, double-three, double-four;
+ *   off on a freestyle board (see BitBoard.setBanHand)
+ * - Per-search statistics (SearchStats) for listeners and JMX (SearchMetrics)
  */
 public class AI {
     public static final int BOARD_SIZE = 15;
@@ -13,16 +25,62 @@ public class AI {
     public static final int WHITE = 1;
     public static final int EMPTY = 0;
 
-    private static final int[] DR = {0, 1, 1, 1};
-    private static final int[] DC = {1, 1, 0, -1};
-
     private static int difficulty = 1; // 0 easy, 1 medium, 2 hard
 
     // Time limits per move (ms)
     private static final int[] TIME_LIMITS_MS = {500, 1000, 2000};
+    // Adaptive time management: a new iteration is only started if the time left is
+    // ITERATION_GROWTH times the last one (STABLE_ITERATION_GROWTH once the best move
+    // has held for STABLE_ITERATIONS iterations); a score drop of SCORE_DROP against
+    // the iteration two plies shallower extends the limit once by TIME_EXTENSION_PCT
+    private static final int ITERATION_GROWTH = 2;
+    private static final int STABLE_ITERATION_GROWTH = 4;
+    private static final int STABLE_ITERATIONS = 3;
+    private static final int TIME_EXTENSION_PCT = 50;
+    // The clock is read once per this many time checks (a power of two)
+    private static final int TIME_CHECK_INTERVAL = 32;
+    private static final long NO_DEADLINE_NS = Long.MAX_VALUE / 2;
     private static final int[] MAX_DEPTHS = {3, 5, 7};
     private static final int[] MAX_CANDIDATES = {10, 14, 20};
 
+    // Late move reductions: moves searched at full depth before quiet ones are
+    // reduced by one ply, and the minimum remaining depth for a reduction
+    private static final int[] LMR_FULL_MOVES = {4, 3, 3};
+    private static final int[] LMR_MIN_DEPTH = {3, 3, 3};
+    // Fours per line that are extended, each by two plies (the four and its forced
+    // reply); only fours within EXTENSION_DEPTH plies of the horizon are extended.
+    // Threat quiescence already follows fours below the horizon, so more or earlier
+    // extensions cost a ply of depth in the time limit without playing better
+    private static final int[] MAX_EXTENSIONS = {0, 0, 1};
+    private static final int EXTENSION_DEPTH = 1;
+    // Plies of threat quiescence below the horizon (fours and forced blocks only)
+    private static final int[] QUIESCENCE_PLIES = {4, 6, 8};
+
+    // VCF solver limits per difficulty: attacker moves, nodes, share of the time limit (%)
+    private static final int[] VCF_DEPTHS = {6, 16, 32};
+    private static final int[] VCF_NODE_LIMITS = {5_000, 50_000, 200_000};
+    private static final int VCF_TIME_SHARE_PCT = 5;
+
+    // VCT solver limits per difficulty: attacker moves, nodes per solve. A VCT
+    // node tries every defence of a three, so it costs some 50us
+    private static final int[] VCT_DEPTHS = {4, 8, 12};
+    private static final int[] VCT_NODE_LIMITS = {500, 2_000, 5_000};
+
+    // Share of the time limit (%) for VCT: own attack first, then defence. The
+    // solvers run back to back in one window of both shares, so what they leave
+    // of it goes to the iterations
+    private static int vctTimeSharePct = 10;
+
+    // Nodes per difficulty for the whole threat defence pass: the opponent's
+    // solves at the root and after every candidate together
+    private static final int[] DEFENCE_NODE_LIMITS = {500, 2_000, 5_000};
+
+    // Half-width of the first aspiration window around the previous iteration's score;
+    // each failure widens it ASPIRATION_GROWTH times until it reaches ASPIRATION_MAX
+    private static final int ASPIRATION_WINDOW = 5_000;
+    private static final int ASPIRATION_GROWTH = 8;
+    private static final int ASPIRATION_MAX = 10_000_000;
+
     // Scoring
     private static final int SCORE_WIN = 1_000_000_000;
     private static final int SCORE_OPEN_FOUR = 10_000_000;
@@ -32,55 +90,147 @@ public class AI {
     private static final int SCORE_OPEN_TWO = 1_000;
     private static final int SCORE_TWO = 100;
     private static final int SCORE_NEIGHBOR = 5;
+    private static final int SCORE_DROP = SCORE_OPEN_THREE / 2;
+
+    // Line scoring patterns and their weights; scored through a lookup table
+    // (PatternTableCheck compares the table with plain pattern counting)
+    static final String[] LINE_PATTERN_STRINGS = {"11111", "011110", "211110", "011112", "01110", "010110",
+        "011010", "001110", "011100", "00110", "01100", "01010", "010010", "010"};
+    static final int[] LINE_PATTERN_WEIGHTS = {SCORE_WIN, SCORE_OPEN_FOUR, SCORE_FOUR, SCORE_FOUR,
+        SCORE_OPEN_THREE, SCORE_OPEN_THREE, SCORE_OPEN_THREE, SCORE_THREE, SCORE_THREE, SCORE_OPEN_TWO,
+        SCORE_OPEN_TWO, SCORE_TWO, SCORE_TWO, SCORE_NEIGHBOR};
+    static final PatternTable LINE_PATTERNS = new PatternTable(LINE_PATTERN_STRINGS, LINE_PATTERN_WEIGHTS);
 
     // Patterns on normalized line: '1' = self, '0' = empty, '2' = block
     private static final String OPEN_FOUR_PATTERN = "011110";
     private static final String[] OPEN_THREE_PATTERNS = {"01110", "010110", "011010"};
 
-    // Zobrist hashing
-    private static final long[][][] ZOBRIST = new long[BOARD_SIZE][BOARD_SIZE][2];
-    static {
-        java.util.Random r = new java.util.Random(1337);
-        for (int i = 0; i < BOARD_SIZE; i++) {
-            for (int j = 0; j < BOARD_SIZE; j++) {
-                ZOBRIST[i][j][0] = r.nextLong(); // BLACK
-                ZOBRIST[i][j][1] = r.nextLong(); // WHITE
-            }
-        }
-    }
+    // Transposition table size (MB)
+    private static int hashSizeMb = 16;
+    private final TranspositionTable tt;
 
-    private static final int TT_MAX = 200_000;
-    private final java.util.HashMap<Long, TTEntry> tt = new java.util.HashMap<>(TT_MAX * 2);
+    // Search threads per move (1 = single-threaded)
+    private static int searchThreads = 1;
 
-    private final int[][] board;
-    private final int aiColor;
-    private long zobristKey;
-    private int stoneCount = 0;
+    // Whether engine sessions search on the opponent's time
+    private static boolean ponderEnabled = true;
+
+    // Search statistics: listeners told after every search, and whether the
+    // time in evaluation, move generation and foul checks is measured
+    private static final java.util.List<SearchStats.Listener> statsListeners =
+        new java.util.concurrent.CopyOnWriteArrayList<>();
+    private static volatile boolean profiling = false;
 
-    // Cached line scores for faster evaluation
-    private final int[][] rowScore = new int[2][BOARD_SIZE];
-    private final int[][] colScore = new int[2][BOARD_SIZE];
-    private final int[][] diag1Score = new int[2][BOARD_SIZE * 2 - 1];
-    private final int[][] diag2Score = new int[2][BOARD_SIZE * 2 - 1];
+    private final BitBoard board;
+    private final int aiColor;
+    private final ThreatSolver threatSolver;
+
+    // Cached line scores for faster evaluation, indexed [colour][dir][line]
+    private final int[][][] lineScore = new int[2][4][BOARD_SIZE * 2 - 1];
+    private final int[] totalScore = new int[2];
+
+    // Per-ply move buffers for allocation-free move generation; moves are
+    // cell indices (row * BOARD_SIZE + col)
+    private static final int MAX_PLY = 64;
+    private final int[][] moveBuffer = new int[MAX_PLY][BOARD_SIZE * BOARD_SIZE];
+    private final int[][] scoreBuffer = new int[MAX_PLY][BOARD_SIZE * BOARD_SIZE];
+
+    // Killer moves per ply (two slots) and history scores per colour and cell;
+    // both only reorder quiet moves, never ahead of a threat
+    private static final int KILLER_BONUS = 2_000;
+    private static final int HISTORY_RANGE = 1_000;
+    private final int[][] killers = new int[MAX_PLY][2];
+    private final int[][] history = new int[2][BOARD_SIZE * BOARD_SIZE];
+    private int historyMax = 0;
+
+    // Scratch objects reused by threat and foul checks
+    private final ThreatCount threatCount = new ThreatCount();
+    private final char[] lineBuffer = new char[9];
 
     private int nodesEvaluated = 0;
-    private long endTimeMs = 0;
+    private int quiescenceNodes = 0;
+    private int solverNodes = 0;
+    private int cutoffs = 0;
+    private int firstMoveCutoffs = 0;
+    private int ttProbes = 0;
+    private int ttHits = 0;
+    private int ttCutoffs = 0;
+    private final long[] cutoffIndex = new long[SearchStats.CUTOFF_INDEX_BUCKETS];
+    // Calls and, while profiling, nanoseconds in evaluation, move generation and foul checks
+    private long evaluations = 0;
+    private long moveGenerations = 0;
+    private long foulChecks = 0;
+    private long evaluationNs = 0;
+    private long moveGenerationNs = 0;
+    private long foulCheckNs = 0;
+    private boolean timing = false;
+    // Main search iterations: nodes, time and deepest ply of each, and when the
+    // main search started (0 if the move was decided before it)
+    private final int[] iterationNodes = new int[MAX_PLY / 2 + 1];
+    private final long[] iterationNs = new long[MAX_PLY / 2 + 1];
+    private final int[] iterationSelDepth = new int[MAX_PLY / 2 + 1];
+    private int iterationCount = 0;
+    private int selDepth = 0;
+    private long mainSearchStartNs = 0;
+    private int reportedDepth = 0;
+    private int reportedScore = 0;
+    private volatile SearchStats lastStats;
+    // Clock of the current search (System.nanoTime): start of its time limit,
+    // deadline, and whether the limit has been extended after a score drop
+    private long clockStartNs = 0;
+    private volatile long endTimeNs = 0;
+    private boolean limitExtended = false;
+    private int timeChecks = 0;
     private boolean timeUp = false;
 
+    // Set while the next search runs on the opponent's time without a deadline
+    private boolean pondering = false;
+
+    // Root moves that survive the opponent's VCF/VCT (rootMoveCount 0 = no restriction)
+    private int[] rootMoves = new int[BOARD_SIZE * BOARD_SIZE];
+    private int rootMoveCount = 0;
+    // Nodes left for the threat defence pass of the current search
+    private int defenceNodes = 0;
+    // Off only to benchmark the main search without the threat solvers
+    private boolean threatSolvers = true;
+
+    // Lazy SMP helpers of the current search; stopRequested is set by the main thread,
+    // or on the main search by a thread that cancels a ponder search
+    private AI[] helpers = new AI[0];
+    private volatile boolean stopRequested = false;
+
+    // Handle of the running getResult call, if any, its node budget (0 = none) and
+    // time limit (0 = the difficulty's); a fixed-budget search has a depth limit
+    // instead of a time limit and never consults the clock
+    private SearchHandle handle;
+    private int nodeLimit = 0;
+    private long timeLimitNs = 0;
+    private boolean fixedBudget = false;
+    private int depthLimit = 0;
+
     public AI(int[][] boardState, int playerColor) {
-        this.board = new int[BOARD_SIZE][BOARD_SIZE];
-        for (int i = 0; i < BOARD_SIZE; i++) {
-            System.arraycopy(boardState[i], 0, this.board[i], 0, BOARD_SIZE);
-        }
         if (playerColor != BLACK && playerColor != WHITE) {
             throw new IllegalArgumentException("playerColor must be BLACK or WHITE");
         }
+        this.board = BitBoard.fromArray(boardState);
         this.aiColor = -playerColor;
-        this.zobristKey = computeHash();
-        this.stoneCount = computeStoneCount();
+        this.tt = new TranspositionTable(hashSizeMb);
+        this.threatSolver = new ThreatSolver(board);
         rebuildAllScores();
     }
 
+    /**
+     * Creates a helper searching the same position through the same transposition table.
+     */
+    private AI(AI main) {
+        this.board = main.board.copy();
+        this.aiColor = main.aiColor;
+        this.tt = main.tt;
+        this.threatSolver = new ThreatSolver(board);
+        rebuildAllScores();
+        resetOrdering();
+    }
+
     public static void setDifficulty(int level) {
         if (level < 0) level = 0;
         if (level > 2) level = 2;
@@ -93,6 +243,77 @@ public class AI {
         return difficulty;
     }
 
+    /**
+     * Sets the transposition table size used by AI instances created afterwards.
+     * @param sizeMb Table size in megabytes
+     */
+    public static void setHashSizeMb(int sizeMb) {
+        hashSizeMb = Math.max(1, sizeMb);
+    }
+
+    public static int getHashSizeMb() {
+        return hashSizeMb;
+    }
+
+    /**
+     * Sets the number of threads used per search. Extra threads run Lazy SMP
+     * helpers that share the transposition table with the main search.
+     * @param threads Thread count, at least 1
+     */
+    public static void setSearchThreads(int threads) {
+        searchThreads = Math.max(1, threads);
+    }
+
+    public static int getSearchThreads() {
+        return searchThreads;
+    }
+
+    /**
+     * Enables or disables pondering in engine sessions (see EngineSession).
+     */
+    public static void setPonderEnabled(boolean enabled) {
+        ponderEnabled = enabled;
+    }
+
+    public static boolean isPonderEnabled() {
+        return ponderEnabled;
+    }
+
+    /**
+     * Sets the share of the time limit given to the VCT solver.
+     * @param percent 0 disables VCT, at most 60
+     */
+    public static void setVctTimeShare(int percent) {
+        vctTimeSharePct = Math.max(0, Math.min(60, percent));
+    }
+
+    public static int getVctTimeShare() {
+        return vctTimeSharePct;
+    }
+
+    /**
+     * Registers a listener told about the statistics of every search of every engine.
+     */
+    public static void addStatsListener(SearchStats.Listener listener) {
+        statsListeners.add(listener);
+    }
+
+    public static void removeStatsListener(SearchStats.Listener listener) {
+        statsListeners.remove(listener);
+    }
+
+    /**
+     * Enables or disables timing evaluation, move generation and foul checks
+     * (see SearchStats). Off by default; takes effect from the next search.
+     */
+    public static void setProfiling(boolean enabled) {
+        profiling = enabled;
+    }
+
+    public static boolean isProfiling() {
+        return profiling;
+    }
+
     public static String getDifficultyName() {
         switch (difficulty) {
             case 0: return "Easy";
@@ -103,73 +324,775 @@ public class AI {
     }
 
     public int[] getResult() {
-        nodesEvaluated = 0;
-        long start = System.currentTimeMillis();
-        endTimeMs = start + TIME_LIMITS_MS[difficulty];
+        try {
+            return search();
+        } finally {
+            endPonder();
+        }
+    }
+
+    /**
+     * Searches like getResult, but can be cancelled through the handle, plans
+     * against its time limit if it has one, stops at its deadline or node
+     * budget if those come first, and reports each completed iteration to
+     * it. A deterministic handle replaces the time limit with its depth
+     * limit; the search then takes no decision on the clock and uses no
+     * helper threads.
+     * @param handle A handle not used by another search
+     * @return {row, col}
+     */
+    public int[] getResult(SearchHandle handle) {
+        handle.attach(this);
+        int[] move = null;
+        try {
+            synchronized (this) {
+                this.handle = handle;
+                nodeLimit = handle.getNodeLimit();
+                timeLimitNs = handle.getTimeLimitMs() * 1_000_000L;
+                fixedBudget = handle.isDeterministic();
+                depthLimit = fixedBudget && handle.getMaxDepth() > 0
+                    ? Math.min(handle.getMaxDepth(), MAX_PLY / 2) : 0;
+            }
+            move = search();
+            return move;
+        } finally {
+            synchronized (this) {
+                this.handle = null;
+                nodeLimit = 0;
+                timeLimitNs = 0;
+                fixedBudget = false;
+                depthLimit = 0;
+            }
+            endPonder();
+            handle.finish(move);
+        }
+    }
+
+    private int[] search() {
+        SearchEvents.Search event = new SearchEvents.Search();
+        event.begin();
+        long started = System.nanoTime();
+        resetStats();
+        int[] move = searchPosition();
+        publishStats(move, started);
+        event.end();
+        if (event.shouldCommit()) {
+            SearchStats stats = lastStats;
+            event.difficulty = difficulty;
+            event.threads = stats.getThreads();
+            event.deterministic = fixedBudget;
+            synchronized (this) {
+                event.pondering = pondering;
+            }
+            event.depth = stats.getDepth();
+            event.row = move[0];
+            event.col = move[1];
+            event.score = stats.getScore();
+            event.nodes = stats.getNodes();
+            event.quiescenceNodes = stats.getQuiescenceNodes();
+            event.ttHits = stats.getTtHits();
+            event.preSearchTime = stats.getPreSearchNs();
+            event.commit();
+        }
+        return move;
+    }
+
+    private int[] searchPosition() {
+        resetOrdering();
+        long start = fixedBudget ? 0 : System.nanoTime();
+        startClock(start);
         timeUp = false;
+        tt.newSearch();
 
         // First move: center
-        if (isBoardEmpty()) {
+        if (board.getStoneCount() == 0) {
             return new int[]{7, 7};
         }
 
+        // Only one move avoids losing at once: blocking the opponent's five
+        int block = findForcedBlock();
+        if (block >= 0) {
+            return playInstantly(block, 0, "forced block", start);
+        }
+
+        long limitNs = timeLimit();
+
+        // A forced win by continuous fours is found far beyond MAX_DEPTHS
+        int vcf = !threatSolvers ? -1 : threatSolver.solveVcf(aiColor, VCF_DEPTHS[difficulty],
+            solverNodeLimit(VCF_NODE_LIMITS[difficulty]),
+            solverDeadline(earlier(endTimeNs, start + limitNs * VCF_TIME_SHARE_PCT / 100)));
+        solverNodes += threatSolver.getNodes();
+        if (vcf >= 0) {
+            reportProgress(0, vcf / BOARD_SIZE, vcf % BOARD_SIZE, SCORE_WIN);
+            return new int[]{vcf / BOARD_SIZE, vcf % BOARD_SIZE};
+        }
+
+        // Threat-space search with threes: own win first, then the opponent's
+        rootMoveCount = 0;
+        long vctStart = fixedBudget ? 0 : System.nanoTime();
+        long vctEnd = solverDeadline(earlier(endTimeNs,
+            start + limitNs * (VCF_TIME_SHARE_PCT + vctTimeSharePct) / 100));
+        if (threatSolvers && vctTimeSharePct > 0) {
+            int vct = threatSolver.solveVct(aiColor, VCT_DEPTHS[difficulty], solverNodeLimit(VCT_NODE_LIMITS[difficulty]),
+                solverDeadline(earlier(vctEnd, vctStart + (vctEnd - vctStart) / 2)));
+            solverNodes += threatSolver.getNodes();
+            if (vct >= 0) {
+                reportProgress(0, vct / BOARD_SIZE, vct % BOARD_SIZE, SCORE_WIN);
+                return new int[]{vct / BOARD_SIZE, vct % BOARD_SIZE};
+            }
+        }
+
+        // Every iteration would return this move before searching anything
+        int[] tactical = findImmediateMove();
+        if (tactical != null) {
+            return playInstantly(tactical[0] * BOARD_SIZE + tactical[1], 0, "tactical move", start);
+        }
+
+        if (threatSolvers && vctTimeSharePct > 0) {
+            findThreatDefenses(vctEnd);
+            if (rootMoveCount == 1) {
+                return playInstantly(rootMoves[0], 0, "only defence", start);
+            }
+        }
+
+        mainSearchStartNs = System.nanoTime();
+        Thread[] workers = startHelpers(fixedBudget ? 0 : searchThreads - 1);
+        int maxDepth = depthLimit > 0 ? depthLimit : MAX_DEPTHS[difficulty];
+
         int[] bestMove = null;
         int bestScore = Integer.MIN_VALUE;
+        int previousScore = Integer.MIN_VALUE;
+        int completedDepth = 0;
+        int stableIterations = 0;
         int[] preferredMove = null;
 
-        for (int depth = 1; depth <= MAX_DEPTHS[difficulty]; depth++) {
-            int[] move = findBestMove(depth, preferredMove);
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            SearchEvents.Iteration iterationEvent = new SearchEvents.Iteration();
+            iterationEvent.begin();
+            long iterationStart = System.nanoTime();
+            int iterationBase = nodesEvaluated + quiescenceNodes;
+            selDepth = 0;
+            int[] move = searchRoot(depth, preferredMove);
+            commitIteration(iterationEvent, depth, !timeUp && move != null, move,
+                nodesEvaluated + quiescenceNodes - iterationBase);
             if (timeUp || move == null) {
+                // Cut off inside the first iteration: its best move so far beats no move
+                if (bestMove == null) {
+                    bestMove = move;
+                }
                 break;
             }
+            stableIterations = bestMove != null && move[0] == bestMove[0] && move[1] == bestMove[1]
+                ? stableIterations + 1 : 1;
+            // Scores alternate with the side to move at the horizon, so compare two plies back
+            boolean scoreDropped = depth >= 3 && (long) previousScore - lastRootScore >= SCORE_DROP;
+            previousScore = bestScore;
             preferredMove = move;
             bestMove = move;
             bestScore = lastRootScore;
+            completedDepth = depth;
+            reportProgress(depth, move[0], move[1], bestScore);
+            iterationNodes[iterationCount] = nodesEvaluated + quiescenceNodes - iterationBase;
+            iterationNs[iterationCount] = System.nanoTime() - iterationStart;
+            iterationSelDepth[iterationCount] = selDepth;
+            iterationCount++;
+            if (!fixedBudget && depth < maxDepth && !startNextIteration(System.nanoTime() - iterationStart,
+                    stableIterations >= STABLE_ITERATIONS, scoreDropped)) {
+                break;
+            }
         }
 
-        long elapsed = System.currentTimeMillis() - start;
-        System.out.println("AI (" + getDifficultyName() + ") evaluated " + nodesEvaluated +
-            " positions in " + elapsed + "ms, score " + bestScore);
+        stopHelpers(workers);
+
+        System.out.println("AI (" + getDifficultyName() + ") evaluated " + getNodesEvaluated() +
+            " positions in " + elapsed(start) + ", depth " + completedDepth + ", score " + bestScore +
+            ", quiescence " + getQuiescenceNodes() +
+            ", first-move cutoffs " + Math.round(getFirstMoveCutoffRate() * 100) + "%" +
+            (workers.length > 0 ? " (" + (workers.length + 1) + " threads)" : ""));
+
+        return bestMove != null ? bestMove : firstPlayableMove();
+    }
 
-        return bestMove != null ? bestMove : new int[]{7, 7};
+    private void commitIteration(SearchEvents.Iteration event, int depth, boolean completed, int[] move, int nodes) {
+        event.end();
+        if (!event.shouldCommit()) {
+            return;
+        }
+        event.depth = depth;
+        event.completed = completed;
+        event.row = move != null ? move[0] : -1;
+        event.col = move != null ? move[1] : -1;
+        event.score = completed ? lastRootScore : 0;
+        event.nodes = nodes;
+        event.selDepth = selDepth;
+        event.commit();
+    }
+
+    /**
+     * Returns a move decided before the main search, e.g. the only move that
+     * does not lose at once.
+     */
+    private int[] playInstantly(int cell, int score, String reason, long start) {
+        System.out.println("AI (" + getDifficultyName() + ") played " + reason + " in " + elapsed(start));
+        reportProgress(0, cell / BOARD_SIZE, cell % BOARD_SIZE, score);
+        return new int[]{cell / BOARD_SIZE, cell % BOARD_SIZE};
+    }
+
+    /**
+     * Finds the block when the opponent has exactly one five point and the
+     * engine has none to play first.
+     * @return A cell index, or -1 if the move is not forced this way
+     */
+    private int findForcedBlock() {
+        int[] points = moveBuffer[0];
+        if (collectFivePoints(aiColor, points) > 0 || collectFivePoints(-aiColor, points) != 1) {
+            return -1;
+        }
+        return isPlayable(points[0], aiColor) ? points[0] : -1;
+    }
+
+    /**
+     * Gets a legal move for a search stopped before it searched any: the
+     * best-ordered candidate, or the centre if there is none.
+     */
+    private int[] firstPlayableMove() {
+        int count = rootMoveCount > 0 ? getRootMoves(-1)
+            : getCandidateMoves(aiColor, MAX_CANDIDATES[difficulty], -1, 0);
+        for (int i = 0; i < count; i++) {
+            if (isPlayable(moveBuffer[0][i], aiColor)) {
+                return new int[]{moveBuffer[0][i] / BOARD_SIZE, moveBuffer[0][i] % BOARD_SIZE};
+            }
+        }
+        return new int[]{7, 7};
+    }
+
+    /**
+     * Caps a solver node limit to what is left of the handle's node budget.
+     */
+    private int solverNodeLimit(int limit) {
+        return nodeLimit > 0 ? Math.max(0, Math.min(limit, nodeLimit - solverNodes)) : limit;
+    }
+
+    private synchronized void startClock(long start) {
+        clockStartNs = start;
+        limitExtended = false;
+        if (pondering) {
+            endTimeNs = capDeadline(start + NO_DEADLINE_NS);
+        } else {
+            endTimeNs = capDeadline(start + timeLimit());
+            stopRequested = false;
+            threatSolver.clearStop();
+        }
+        if (handle != null && handle.isCancelled()) {
+            stop();
+        }
+    }
+
+    /**
+     * Gets the time limit of the current search in nanoseconds: the handle's,
+     * if it has one, otherwise the difficulty's.
+     */
+    private long timeLimit() {
+        return timeLimitNs > 0 ? timeLimitNs : TIME_LIMITS_MS[difficulty] * 1_000_000L;
+    }
+
+    /**
+     * Moves a System.nanoTime deadline forward to the handle's deadline, if that is earlier.
+     */
+    private long capDeadline(long deadlineNs) {
+        if (handle == null || handle.getDeadlineMs() == 0) {
+            return deadlineNs;
+        }
+        long handleNs = System.nanoTime() + (handle.getDeadlineMs() - System.currentTimeMillis()) * 1_000_000L;
+        return earlier(deadlineNs, handleNs);
+    }
+
+    /**
+     * Gets the deadline to give the threat solver: none in a fixed-budget search.
+     */
+    private long solverDeadline(long deadlineNs) {
+        return fixedBudget ? ThreatSolver.NO_DEADLINE : deadlineNs;
+    }
+
+    private String elapsed(long start) {
+        return fixedBudget ? "a fixed budget" : (System.nanoTime() - start) / 1_000_000 + "ms";
+    }
+
+    private static long earlier(long aNs, long bNs) {
+        return aNs - bNs <= 0 ? aNs : bNs;
+    }
+
+    /**
+     * Decides after a completed iteration whether to start the next one. A
+     * dropped score extends the limit once; otherwise the next iteration is
+     * skipped if it would probably not finish, sooner once the best move is
+     * stable. Ponder searches always go on.
+     * @param iterationNs Duration of the completed iteration
+     */
+    private synchronized boolean startNextIteration(long iterationNs, boolean stable, boolean scoreDropped) {
+        if (pondering) {
+            return true;
+        }
+        if (scoreDropped && !limitExtended) {
+            limitExtended = true;
+            endTimeNs = capDeadline(endTimeNs + timeLimit() * TIME_EXTENSION_PCT / 100);
+        }
+        long remainingNs = endTimeNs - System.nanoTime();
+        return remainingNs > iterationNs * (stable ? STABLE_ITERATION_GROWTH : ITERATION_GROWTH);
+    }
+
+    private void reportProgress(int depth, int row, int col, int score) {
+        reportedDepth = depth;
+        reportedScore = score;
+        if (handle != null) {
+            handle.report(depth, row, col, score);
+        }
+    }
+
+    private synchronized void endPonder() {
+        pondering = false;
+    }
+
+    // ==================== PONDERING ====================
+
+    /**
+     * Makes the next getResult a ponder search: it runs without a deadline
+     * until ponderHit or stop is called, or the depth limit is reached.
+     */
+    synchronized void preparePonder() {
+        pondering = true;
+        stopRequested = false;
+        threatSolver.clearStop();
+    }
+
+    /**
+     * Turns a running ponder search into a normal search whose time limit
+     * starts now. Safe to call from another thread; does not block.
+     */
+    synchronized void ponderHit() {
+        pondering = false;
+        clockStartNs = System.nanoTime();
+        endTimeNs = capDeadline(clockStartNs + timeLimit());
+    }
+
+    /**
+     * Asks a running search to return as soon as possible. Safe to call
+     * from another thread; does not block.
+     */
+    void stop() {
+        stopRequested = true;
+        threatSolver.stop();
+    }
+
+    /**
+     * Stops the search run for the handle, or a ponder search, but never a
+     * later search started with another handle.
+     */
+    synchronized void cancel(SearchHandle searchHandle) {
+        if (handle == null || handle == searchHandle) {
+            stop();
+        }
+    }
+
+    /**
+     * Guesses the opponent's reply in the current position: the transposition
+     * table move if there is one, otherwise the best-ordered candidate.
+     * @return A cell index, or -1 if there is no legal move
+     */
+    int predictReply() {
+        int opponent = -aiColor;
+        long entry = tt.probe(board.getHash() ^ (opponent == BLACK ? 1L : 2L));
+        int ttMove = entry != 0 ? TranspositionTable.move(entry) : TranspositionTable.NO_MOVE;
+        if (ttMove != TranspositionTable.NO_MOVE && isPlayable(ttMove, opponent)) {
+            return ttMove;
+        }
+        int count = getCandidateMoves(opponent, MAX_CANDIDATES[difficulty], -1, 0);
+        for (int i = 0; i < count; i++) {
+            if (isPlayable(moveBuffer[0][i], opponent)) {
+                return moveBuffer[0][i];
+            }
+        }
+        return -1;
+    }
+
+    private boolean isPlayable(int cell, int color) {
+        int r = cell / BOARD_SIZE;
+        int c = cell % BOARD_SIZE;
+        return board.isEmpty(r, c) && (color != BLACK || !isFoulMoveInternal(r, c));
+    }
+
+    /**
+     * Gets the number of nodes searched by the last getResult call, including helpers.
+     */
+    public int getNodesEvaluated() {
+        int total = nodesEvaluated;
+        for (AI helper : helpers) {
+            total += helper.nodesEvaluated;
+        }
+        return total;
+    }
+
+    /**
+     * Gets the number of quiescence nodes below the horizon in the last
+     * getResult call, including helpers; not part of getNodesEvaluated.
+     */
+    public int getQuiescenceNodes() {
+        int total = quiescenceNodes;
+        for (AI helper : helpers) {
+            total += helper.quiescenceNodes;
+        }
+        return total;
+    }
+
+    /**
+     * Gets the number of threat solver nodes in the last getResult call:
+     * own VCF/VCT and the threat defence pass. Counted against a handle's
+     * node budget, but not part of getNodesEvaluated.
+     */
+    public int getSolverNodes() {
+        return solverNodes;
+    }
+
+    /**
+     * Gets the number of main search nodes in the last getResult call that
+     * found their position in the transposition table, including helpers.
+     */
+    public int getTtHits() {
+        int total = ttHits;
+        for (AI helper : helpers) {
+            total += helper.ttHits;
+        }
+        return total;
+    }
+
+    /**
+     * Gets the number of beta cutoffs in the main search of the last
+     * getResult call, including helpers.
+     */
+    public int getCutoffs() {
+        int total = cutoffs;
+        for (AI helper : helpers) {
+            total += helper.cutoffs;
+        }
+        return total;
+    }
+
+    /**
+     * Gets the share of beta cutoffs in the last getResult call that came from
+     * the first move searched, including helpers; a measure of move ordering.
+     * @return A value between 0 and 1, or 0 if there were no cutoffs
+     */
+    public double getFirstMoveCutoffRate() {
+        int total = cutoffs;
+        int first = firstMoveCutoffs;
+        for (AI helper : helpers) {
+            total += helper.cutoffs;
+            first += helper.firstMoveCutoffs;
+        }
+        return total > 0 ? (double) first / total : 0.0;
+    }
+
+    /**
+     * Gets the statistics of the last finished search, or null before the first one.
+     */
+    public SearchStats getLastStats() {
+        return lastStats;
+    }
+
+    private void resetStats() {
+        nodesEvaluated = 0;
+        quiescenceNodes = 0;
+        solverNodes = 0;
+        cutoffs = 0;
+        firstMoveCutoffs = 0;
+        ttProbes = 0;
+        ttHits = 0;
+        ttCutoffs = 0;
+        java.util.Arrays.fill(cutoffIndex, 0);
+        evaluations = 0;
+        moveGenerations = 0;
+        foulChecks = 0;
+        evaluationNs = 0;
+        moveGenerationNs = 0;
+        foulCheckNs = 0;
+        timing = profiling;
+        iterationCount = 0;
+        mainSearchStartNs = 0;
+        reportedDepth = 0;
+        reportedScore = 0;
+        helpers = new AI[0];
+    }
+
+    /**
+     * Builds the statistics of the search that just returned move and hands
+     * them to the listeners.
+     * @param startedNs System.nanoTime when the search started
+     */
+    private void publishStats(int[] move, long startedNs) {
+        long elapsedNs = System.nanoTime() - startedNs;
+        SearchStats stats = new SearchStats();
+        stats.difficulty = difficulty;
+        stats.threads = helpers.length + 1;
+        stats.row = move[0];
+        stats.col = move[1];
+        stats.depth = reportedDepth;
+        stats.score = reportedScore;
+        stats.elapsedNs = elapsedNs;
+        stats.preSearchNs = mainSearchStartNs != 0 ? mainSearchStartNs - startedNs : elapsedNs;
+        stats.iterationNodes = java.util.Arrays.copyOf(iterationNodes, iterationCount);
+        stats.iterationNs = java.util.Arrays.copyOf(iterationNs, iterationCount);
+        stats.iterationSelDepth = java.util.Arrays.copyOf(iterationSelDepth, iterationCount);
+        stats.profiled = timing;
+        for (AI ai : withHelpers()) {
+            stats.nodes += ai.nodesEvaluated;
+            stats.quiescenceNodes += ai.quiescenceNodes;
+            stats.solverNodes += ai.solverNodes;
+            stats.ttProbes += ai.ttProbes;
+            stats.ttHits += ai.ttHits;
+            stats.ttCutoffs += ai.ttCutoffs;
+            stats.cutoffs += ai.cutoffs;
+            for (int i = 0; i < SearchStats.CUTOFF_INDEX_BUCKETS; i++) {
+                stats.cutoffIndex[i] += ai.cutoffIndex[i];
+            }
+            stats.evaluations += ai.evaluations;
+            stats.moveGenerations += ai.moveGenerations;
+            stats.foulChecks += ai.foulChecks;
+            stats.evaluationNs += ai.evaluationNs;
+            stats.moveGenerationNs += ai.moveGenerationNs;
+            stats.foulCheckNs += ai.foulCheckNs;
+        }
+        timing = false;
+        lastStats = stats;
+        for (SearchStats.Listener listener : statsListeners) {
+            try {
+                listener.onSearchFinished(stats);
+            } catch (RuntimeException e) {
+                System.err.println("Search stats listener failed: " + e);
+            }
+        }
+    }
+
+    private AI[] withHelpers() {
+        AI[] all = java.util.Arrays.copyOf(helpers, helpers.length + 1);
+        all[helpers.length] = this;
+        return all;
+    }
+
+    // ==================== LAZY SMP ====================
+
+    private Thread[] startHelpers(int count) {
+        helpers = new AI[count];
+        Thread[] workers = new Thread[count];
+        for (int i = 0; i < count; i++) {
+            AI helper = new AI(this);
+            helper.endTimeNs = endTimeNs;
+            helper.timing = timing;
+            helper.rootMoves = rootMoves;
+            helper.rootMoveCount = rootMoveCount;
+            helpers[i] = helper;
+            // Odd helpers start one ply deeper so threads spread over neighbouring depths
+            int startDepth = 1 + (i + 1) % 2;
+            workers[i] = new Thread(() -> helper.helperSearch(startDepth), "AI-helper-" + (i + 1));
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+        return workers;
+    }
+
+    private void helperSearch(int startDepth) {
+        int[] preferredMove = null;
+        for (int depth = startDepth; depth <= MAX_DEPTHS[difficulty]; depth++) {
+            int[] move = searchRoot(depth, preferredMove);
+            if (timeUp || move == null) {
+                break;
+            }
+            preferredMove = move;
+        }
+    }
+
+    private void stopHelpers(Thread[] workers) {
+        for (AI helper : helpers) {
+            helper.stopRequested = true;
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // ==================== THREAT DEFENCE ====================
+
+    /**
+     * If the opponent would have a VCF or VCT with the move, keeps only the
+     * root candidates after which it has none. All solves share one node
+     * budget, and none runs unless the opponent can make a four or a three.
+     * Leaves the root unrestricted when no candidate is safe or the budget or
+     * deadline runs out before all are checked.
+     */
+    private void findThreatDefenses(long deadlineNs) {
+        int opponent = -aiColor;
+        int budget = solverNodeLimit(DEFENCE_NODE_LIMITS[difficulty]);
+        // The root check gets half, so it stays cheap when there is no threat
+        defenceNodes = budget / 2;
+        if (!threatSolver.hasThreat(opponent) || !hasThreatWin(opponent, deadlineNs)) {
+            return;
+        }
+        defenceNodes += budget - budget / 2;
+
+        int count = getCandidateMoves(aiColor, MAX_CANDIDATES[difficulty] * 2, -1, 0);
+        int[] candidates = moveBuffer[0];
+        int safe = 0;
+        for (int i = 0; i < count; i++) {
+            int move = candidates[i];
+            int r = move / BOARD_SIZE;
+            int c = move % BOARD_SIZE;
+            if (aiColor == BLACK && isFoulMoveInternal(r, c)) {
+                continue;
+            }
+            board.place(r, c, aiColor);
+            boolean refuted = hasThreatWin(opponent, deadlineNs);
+            board.remove(r, c, aiColor);
+            if (!refuted && (defenceNodes <= 0
+                    || (deadlineNs != ThreatSolver.NO_DEADLINE && System.nanoTime() - deadlineNs >= 0))) {
+                // Cut short, so this candidate is not known to be safe
+                return;
+            }
+            if (!refuted) {
+                rootMoves[safe++] = move;
+            }
+        }
+        rootMoveCount = safe;
+    }
+
+    /**
+     * Looks for the attacker's VCF, then its VCT, charging both to the
+     * defence pass's node budget.
+     */
+    private boolean hasThreatWin(int attacker, long deadlineNs) {
+        int vcf = threatSolver.solveVcf(attacker, VCF_DEPTHS[difficulty],
+            Math.min(VCF_NODE_LIMITS[difficulty], defenceNodes), deadlineNs);
+        defenceNodes -= threatSolver.getNodes();
+        solverNodes += threatSolver.getNodes();
+        if (vcf >= 0) {
+            return true;
+        }
+        int vct = threatSolver.solveVct(attacker, VCT_DEPTHS[difficulty],
+            Math.min(VCT_NODE_LIMITS[difficulty], defenceNodes), deadlineNs);
+        defenceNodes -= threatSolver.getNodes();
+        solverNodes += threatSolver.getNodes();
+        return vct >= 0;
+    }
+
+    /**
+     * Turns the threat solvers in front of the main search on or off. For
+     * benchmarks, which measure the main search and the solvers separately.
+     */
+    void setThreatSolvers(boolean enabled) {
+        threatSolvers = enabled;
+    }
+
+    /**
+     * Runs the threat solvers of a deterministic search without the main
+     * search: own VCF, own VCT, then the threat defence pass.
+     * @return Solver nodes
+     */
+    int solveThreats() {
+        solverNodes = 0;
+        int vcf = threatSolver.solveVcf(aiColor, VCF_DEPTHS[difficulty], VCF_NODE_LIMITS[difficulty],
+            ThreatSolver.NO_DEADLINE);
+        solverNodes += threatSolver.getNodes();
+        if (vcf < 0 && vctTimeSharePct > 0) {
+            int vct = threatSolver.solveVct(aiColor, VCT_DEPTHS[difficulty], VCT_NODE_LIMITS[difficulty],
+                ThreatSolver.NO_DEADLINE);
+            solverNodes += threatSolver.getNodes();
+            if (vct < 0) {
+                findThreatDefenses(ThreatSolver.NO_DEADLINE);
+                rootMoveCount = 0;
+            }
+        }
+        return solverNodes;
     }
 
     // ==================== ROOT SEARCH ====================
 
     private int lastRootScore = Integer.MIN_VALUE;
+    private int rootDepth = 0;
+
+    /**
+     * Searches one iteration inside an aspiration window around the previous
+     * score, widening the failing side and re-searching until the score fits.
+     */
+    private int[] searchRoot(int depth, int[] preferredMove) {
+        int previous = lastRootScore;
+        if (depth < 3 || previous == Integer.MIN_VALUE || Math.abs(previous) >= SCORE_OPEN_FOUR) {
+            return findBestMove(depth, preferredMove, Integer.MIN_VALUE / 2, Integer.MAX_VALUE / 2);
+        }
+
+        int delta = ASPIRATION_WINDOW;
+        int alpha = previous - delta;
+        int beta = previous + delta;
+        while (true) {
+            int[] move = findBestMove(depth, preferredMove, alpha, beta);
+            if (timeUp || move == null) {
+                return move;
+            }
+            int score = lastRootScore;
+            if (score > alpha && score < beta) {
+                return move;
+            }
+            delta *= ASPIRATION_GROWTH;
+            if (delta >= ASPIRATION_MAX) {
+                return findBestMove(depth, move, Integer.MIN_VALUE / 2, Integer.MAX_VALUE / 2);
+            }
+            if (score <= alpha) {
+                alpha = score - delta;
+            } else {
+                beta = score + delta;
+                preferredMove = move;
+            }
+        }
+    }
 
-    private int[] findBestMove(int depth, int[] preferredMove) {
+    private int[] findBestMove(int depth, int[] preferredMove, int alpha, int beta) {
+        rootDepth = depth;
         int[] tactical = findImmediateMove();
         if (tactical != null) {
+            lastRootScore = 0; // Forced reply, not scored
             return tactical;
         }
 
-        int[][] candidates = getCandidateMoves(aiColor, MAX_CANDIDATES[difficulty], preferredMove);
-        if (candidates.length == 0) {
+        int preferred = preferredMove != null ? preferredMove[0] * BOARD_SIZE + preferredMove[1] : -1;
+        int count = rootMoveCount > 0 ? getRootMoves(preferred)
+            : getCandidateMoves(aiColor, MAX_CANDIDATES[difficulty], preferred, 0);
+        if (count == 0) {
             return null;
         }
 
+        int[] moves = moveBuffer[0];
         int bestScore = Integer.MIN_VALUE;
-        int[] bestMove = null;
-        int alpha = Integer.MIN_VALUE / 2;
-        int beta = Integer.MAX_VALUE / 2;
+        int bestMove = -1;
 
-        for (int[] move : candidates) {
+        for (int i = 0; i < count; i++) {
             if (isTimeUp()) break;
-            int r = move[0];
-            int c = move[1];
+            int move = moves[i];
+            int r = move / BOARD_SIZE;
+            int c = move % BOARD_SIZE;
 
             if (aiColor == BLACK && isFoulMoveInternal(r, c)) {
                 continue;
             }
 
             makeMove(r, c, aiColor);
-            int score = -alphaBeta(-aiColor, depth - 1, -beta, -alpha);
+            int score = searchChild(-aiColor, depth - 1, 1, alpha, beta, move, bestMove < 0);
             undoMove(r, c, aiColor);
 
             if (score > bestScore) {
                 bestScore = score;
-                bestMove = new int[]{r, c};
+                bestMove = move;
             }
 
             if (score > alpha) alpha = score;
@@ -179,189 +1102,515 @@ public class AI {
         }
 
         lastRootScore = bestScore;
-        return bestMove;
+        return bestMove >= 0 ? new int[]{bestMove / BOARD_SIZE, bestMove % BOARD_SIZE} : null;
     }
 
-    private int alphaBeta(int color, int depth, int alpha, int beta) {
+    /**
+     * Copies the restricted root moves into the ply-0 buffer, preferred move first.
+     */
+    private int getRootMoves(int preferred) {
+        int[] moves = moveBuffer[0];
+        System.arraycopy(rootMoves, 0, moves, 0, rootMoveCount);
+        for (int i = 1; i < rootMoveCount; i++) {
+            if (moves[i] == preferred) {
+                moves[i] = moves[0];
+                moves[0] = preferred;
+                break;
+            }
+        }
+        return rootMoveCount;
+    }
+
+    /**
+     * Searches a child from the parent's point of view. The first move gets the
+     * full window; later moves are tried with a null window around alpha and
+     * re-searched with the full window only if they beat it.
+     */
+    private int searchChild(int color, int depth, int ply, int alpha, int beta, int move, boolean first) {
+        if (first || beta - alpha <= 1) {
+            return -alphaBeta(color, depth, ply, -beta, -alpha, move);
+        }
+        int score = -alphaBeta(color, depth, ply, -alpha - 1, -alpha, move);
+        if (score > alpha && score < beta && !timeUp) {
+            score = -alphaBeta(color, depth, ply, -beta, -alpha, move);
+        }
+        return score;
+    }
+
+    /**
+     * Searches the position after the opponent played lastMove (a cell index).
+     */
+    private int alphaBeta(int color, int depth, int ply, int alpha, int beta, int lastMove) {
         if (isTimeUp()) {
             return evaluate(color);
         }
         nodesEvaluated++;
+        if (ply > selDepth) selDepth = ply;
 
-        int winner = checkWinner();
-        if (winner != EMPTY) {
-            return winner == color ? SCORE_WIN : -SCORE_WIN;
+        if (board.isFiveAt(lastMove / BOARD_SIZE, lastMove % BOARD_SIZE, -color)) {
+            return -SCORE_WIN;
         }
 
         if (depth <= 0) {
+            return quiesce(color, ply, 0, alpha, beta, lastMove);
+        }
+        if (ply >= MAX_PLY) {
             return evaluate(color);
         }
 
-        long key = zobristKey ^ (color == BLACK ? 1L : 2L);
-        TTEntry entry = tt.get(key);
-        if (entry != null && entry.depth >= depth) {
-            if (entry.flag == TTEntry.EXACT) return entry.value;
-            if (entry.flag == TTEntry.LOWER && entry.value > alpha) alpha = entry.value;
-            if (entry.flag == TTEntry.UPPER && entry.value < beta) beta = entry.value;
-            if (alpha >= beta) return entry.value;
+        long key = board.getHash() ^ (color == BLACK ? 1L : 2L);
+        long entry = tt.probe(key);
+        ttProbes++;
+        int ttMove = -1;
+        if (entry != 0) {
+            ttHits++;
+            int value = TranspositionTable.score(entry);
+            int flag = TranspositionTable.flag(entry);
+            if (TranspositionTable.depth(entry) >= depth) {
+                if (flag == TranspositionTable.LOWER && value > alpha) alpha = value;
+                if (flag == TranspositionTable.UPPER && value < beta) beta = value;
+                if (flag == TranspositionTable.EXACT || alpha >= beta) {
+                    ttCutoffs++;
+                    return value;
+                }
+            }
+            if (TranspositionTable.move(entry) != TranspositionTable.NO_MOVE) {
+                ttMove = TranspositionTable.move(entry);
+            }
         }
 
         int alpha0 = alpha;
-        int[][] candidates = getCandidateMoves(color, MAX_CANDIDATES[difficulty],
-            entry != null ? entry.bestMove : null);
-        if (candidates.length == 0) {
+        int count = getCandidateMoves(color, MAX_CANDIDATES[difficulty], ttMove, ply);
+        if (count == 0) {
             return evaluate(color);
         }
 
+        int[] moves = moveBuffer[ply];
+        int[] scores = scoreBuffer[ply];
+
+        // A four and its forced reply are both extended, so the line keeps the
+        // parity of the iteration; at the reply only a five or the block is
+        // searched, unreduced
+        boolean canExtend = ply + depth + 2 <= rootDepth + 2 * MAX_EXTENSIONS[difficulty];
+        boolean inFour = makesFour(lastMove / BOARD_SIZE, lastMove % BOARD_SIZE, -color);
+        boolean canReduce = !inFour && depth >= LMR_MIN_DEPTH[difficulty];
+        if (inFour) {
+            count = countForcedReplies(moves, scores, count);
+            if (count == 0) {
+                return evaluate(color);
+            }
+        }
         int bestScore = Integer.MIN_VALUE / 2;
-        int[] bestMove = null;
+        int bestMove = -1;
+        int searched = 0;
 
-        for (int[] move : candidates) {
+        for (int i = 0; i < count; i++) {
             if (isTimeUp()) break;
-            int r = move[0];
-            int c = move[1];
+            int move = moves[i];
+            int r = move / BOARD_SIZE;
+            int c = move % BOARD_SIZE;
 
             if (color == BLACK && isFoulMoveInternal(r, c)) {
                 continue;
             }
 
+            boolean first = bestMove < 0;
             makeMove(r, c, color);
-            int score = -alphaBeta(-color, depth - 1, -beta, -alpha);
+            boolean four = makesFour(r, c, color);
+            int newDepth = depth - 1 + (canExtend && four && depth <= EXTENSION_DEPTH ? 2 : 0);
+            int score;
+            if (canReduce && !four && searched >= LMR_FULL_MOVES[difficulty] && isQuiet(move, scores[i], ply)) {
+                score = -alphaBeta(-color, newDepth - 1, ply + 1, -alpha - 1, -alpha, move);
+                if (score > alpha && !timeUp) {
+                    score = searchChild(-color, newDepth, ply + 1, alpha, beta, move, false);
+                }
+            } else {
+                score = searchChild(-color, newDepth, ply + 1, alpha, beta, move, first);
+            }
             undoMove(r, c, color);
+            searched++;
 
             if (score > bestScore) {
                 bestScore = score;
-                bestMove = new int[]{r, c};
+                bestMove = move;
             }
 
             if (score > alpha) alpha = score;
-            if (alpha >= beta) break;
+            if (alpha >= beta) {
+                cutoffs++;
+                if (first) firstMoveCutoffs++;
+                cutoffIndex[Math.min(searched - 1, SearchStats.CUTOFF_INDEX_BUCKETS - 1)]++;
+                recordCutoff(color, move, depth, ply);
+                break;
+            }
         }
 
-        int flag = TTEntry.EXACT;
-        if (bestScore <= alpha0) flag = TTEntry.UPPER;
-        else if (bestScore >= beta) flag = TTEntry.LOWER;
+        int flag = TranspositionTable.EXACT;
+        if (bestScore <= alpha0) flag = TranspositionTable.UPPER;
+        else if (bestScore >= beta) flag = TranspositionTable.LOWER;
 
-        if (tt.size() > TT_MAX) tt.clear();
-        if (bestMove != null) {
-            tt.put(key, new TTEntry(bestScore, depth, flag, bestMove));
+        if (bestMove >= 0) {
+            tt.store(key, bestScore, depth, flag, bestMove);
         }
 
         return bestScore;
     }
 
+    // ==================== MOVE ORDERING ====================
+
+    /**
+     * Forgets what earlier searches learned (transposition table, history,
+     * the threat solver's failed positions and the candidate order left by
+     * moves and undos), so the next search runs exactly like one on a new
+     * engine built from the same position.
+     */
+    void clearSearchState() {
+        tt.clear();
+        threatSolver.clear();
+        board.resetFrontierOrder();
+        for (int[] colorHistory : history) {
+            java.util.Arrays.fill(colorHistory, 0);
+        }
+        historyMax = 0;
+        lastRootScore = Integer.MIN_VALUE;
+    }
+
+    /**
+     * Clears the killer slots and halves the history, so a reused engine
+     * keeps some of its ordering knowledge without it going stale.
+     */
+    private void resetOrdering() {
+        for (int[] slots : killers) {
+            slots[0] = -1;
+            slots[1] = -1;
+        }
+        historyMax = 0;
+        for (int[] colorHistory : history) {
+            for (int i = 0; i < colorHistory.length; i++) {
+                colorHistory[i] >>= 1;
+                historyMax = Math.max(historyMax, colorHistory[i]);
+            }
+        }
+    }
+
+    private void recordCutoff(int color, int move, int depth, int ply) {
+        int[] slots = killers[ply];
+        if (slots[0] != move) {
+            slots[1] = slots[0];
+            slots[0] = move;
+        }
+        int[] colorHistory = history[BitBoard.colorIndex(color)];
+        colorHistory[move] += depth * depth;
+        if (colorHistory[move] > historyMax) {
+            historyMax = colorHistory[move];
+        }
+    }
+
+    /**
+     * Resolves threats below the horizon. The side to move wins with a five
+     * point, must block a four (losing if there are two), and otherwise may
+     * stand pat on the static evaluation or try its own fours.
+     * @param qply Plies below the horizon; 0 is the horizon node itself
+     */
+    private int quiesce(int color, int ply, int qply, int alpha, int beta, int lastMove) {
+        if (qply > 0) {
+            quiescenceNodes++;
+            if (ply > selDepth) selDepth = ply;
+            if (board.isFiveAt(lastMove / BOARD_SIZE, lastMove % BOARD_SIZE, -color)) {
+                return -SCORE_WIN;
+            }
+        }
+        if (qply >= QUIESCENCE_PLIES[difficulty] || ply >= MAX_PLY || isTimeUp()) {
+            return evaluate(color);
+        }
+
+        int[] moves = moveBuffer[ply];
+        if (collectFivePoints(color, moves) > 0) {
+            return SCORE_WIN;
+        }
+
+        int count;
+        int bestScore;
+        if (makesFour(lastMove / BOARD_SIZE, lastMove % BOARD_SIZE, -color)) {
+            count = collectFivePoints(-color, moves);
+            if (count != 1) {
+                // Two fives cannot be blocked; none means the four was an overline for black
+                return count > 1 ? -SCORE_WIN : evaluate(color);
+            }
+            bestScore = -SCORE_WIN;
+        } else {
+            bestScore = evaluate(color);
+            if (bestScore >= beta) {
+                return bestScore;
+            }
+            if (bestScore > alpha) alpha = bestScore;
+            count = collectFours(color, moves);
+        }
+
+        for (int i = 0; i < count; i++) {
+            int move = moves[i];
+            int r = move / BOARD_SIZE;
+            int c = move % BOARD_SIZE;
+            if (color == BLACK && isFoulMoveInternal(r, c)) {
+                continue;
+            }
+
+            makeMove(r, c, color);
+            int score = -quiesce(-color, ply + 1, qply + 1, -beta, -alpha, move);
+            undoMove(r, c, color);
+
+            if (score > bestScore) bestScore = score;
+            if (score > alpha) alpha = score;
+            if (alpha >= beta) break;
+        }
+        return bestScore;
+    }
+
+    /**
+     * Collects up to two cells where color completes five.
+     * @return The number of cells written to moves
+     */
+    private int collectFivePoints(int color, int[] moves) {
+        int count = 0;
+        int size = board.frontierSize(1);
+        for (int i = 0; i < size && count < 2; i++) {
+            int cell = board.frontierCell(1, i);
+            int r = cell / BOARD_SIZE;
+            int c = cell % BOARD_SIZE;
+            if (hasStonesNear(r, c, color, 4) && board.isFiveAt(r, c, color)) {
+                moves[count++] = cell;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Collects the moves with which color makes a four.
+     * @return The number of moves written to moves
+     */
+    private int collectFours(int color, int[] moves) {
+        int count = 0;
+        int size = board.frontierSize(2);
+        for (int i = 0; i < size; i++) {
+            int cell = board.frontierCell(2, i);
+            int r = cell / BOARD_SIZE;
+            int c = cell % BOARD_SIZE;
+            if (!hasStonesNear(r, c, color, 3)) continue;
+            board.probe(r, c, color);
+            boolean four = makesFour(r, c, color);
+            board.unprobe(r, c, color);
+            if (four) moves[count++] = cell;
+        }
+        return count;
+    }
+
+    /**
+     * Moves a five or a block to the front of the candidates.
+     * @return The number of such moves
+     */
+    private int countForcedReplies(int[] moves, int[] scores, int count) {
+        int forced = 0;
+        for (int i = 0; i < count; i++) {
+            if (scores[i] >= SCORE_WIN - 1) {
+                swapMoves(moves, scores, forced++, i);
+            }
+        }
+        return forced;
+    }
+
+    /**
+     * Checks whether a candidate is a reduction target: no threat in its
+     * ordering score, not the TT move (always first) and not a killer.
+     */
+    private boolean isQuiet(int move, int orderScore, int ply) {
+        return orderScore < SCORE_OPEN_THREE && move != killers[ply][0] && move != killers[ply][1];
+    }
+
+    /**
+     * Checks whether the stone at (row, col) makes a four (or an open four).
+     */
+    private boolean makesFour(int row, int col, int color) {
+        for (int dir = 0; dir < 4; dir++) {
+            if (stonesNear(row, col, dir, color) < 4) continue;
+            board.fillLine(row, col, dir, color, 4, lineBuffer);
+            if (hasFourInLine(lineBuffer, 4)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether some line through (row, col) has at least min stones of
+     * color within four cells; a cheap filter before the pattern checks.
+     */
+    private boolean hasStonesNear(int row, int col, int color, int min) {
+        for (int dir = 0; dir < 4; dir++) {
+            if (stonesNear(row, col, dir, color) >= min) return true;
+        }
+        return false;
+    }
+
+    private int stonesNear(int row, int col, int dir, int color) {
+        int p = BitBoard.linePos(dir, row, col);
+        long window = ((1L << (p + 5)) - 1) & ~((1L << Math.max(0, p - 4)) - 1);
+        return Long.bitCount(board.lineMask(color, dir, row, col) & window);
+    }
+
     // ==================== TACTICAL CHECKS ====================
 
     private int[] findImmediateMove() {
-        int[] blockWin = null;
-        int[] win = null;
-        int[] openFour = null;
-        int[] blockOpenFour = null;
-        int[] doubleThreat = null;
-        int[] blockDoubleThreat = null;
+        // Cell indices; ties keep the last cell in row-major order
+        int blockWin = -1;
+        int win = -1;
+        int openFour = -1;
+        int blockOpenFour = -1;
+        int doubleThreat = -1;
+        int blockDoubleThreat = -1;
         int neighborDist = Math.max(2, getNeighborDistance());
 
-        for (int r = 0; r < BOARD_SIZE; r++) {
-            for (int c = 0; c < BOARD_SIZE; c++) {
-                if (board[r][c] != EMPTY || !hasNeighbor(r, c, neighborDist)) continue;
+        int frontierSize = board.frontierSize(neighborDist);
+        for (int i = 0; i < frontierSize; i++) {
+            int cell = board.frontierCell(neighborDist, i);
+            int r = cell / BOARD_SIZE;
+            int c = cell % BOARD_SIZE;
 
-                if (aiColor == BLACK && isFoulMoveInternal(r, c)) continue;
+            if (aiColor == BLACK && isFoulMoveInternal(r, c)) continue;
 
-                board[r][c] = aiColor;
-                if (isWinningPosition(r, c, aiColor)) {
-                    win = new int[]{r, c};
-                } else {
-                    ThreatCount tc = getThreatCount(r, c, aiColor);
-                    if (tc.openFour > 0) openFour = new int[]{r, c};
-                    if (tc.isDoubleThreat()) doubleThreat = new int[]{r, c};
-                }
-                board[r][c] = EMPTY;
-
-                board[r][c] = -aiColor;
-                if (isWinningPosition(r, c, -aiColor)) {
-                    blockWin = new int[]{r, c};
-                } else {
-                    ThreatCount otc = getThreatCount(r, c, -aiColor);
-                    if (otc.openFour > 0) blockOpenFour = new int[]{r, c};
-                    if (otc.isDoubleThreat()) blockDoubleThreat = new int[]{r, c};
-                }
-                board[r][c] = EMPTY;
+            board.probe(r, c, aiColor);
+            if (isWinningPosition(r, c, aiColor)) {
+                win = Math.max(win, cell);
+            } else {
+                ThreatCount tc = getThreatCount(r, c, aiColor);
+                if (tc.openFour > 0) openFour = Math.max(openFour, cell);
+                if (tc.isDoubleThreat()) doubleThreat = Math.max(doubleThreat, cell);
             }
+            board.unprobe(r, c, aiColor);
+
+            board.probe(r, c, -aiColor);
+            if (isWinningPosition(r, c, -aiColor)) {
+                blockWin = Math.max(blockWin, cell);
+            } else {
+                ThreatCount otc = getThreatCount(r, c, -aiColor);
+                if (otc.openFour > 0) blockOpenFour = Math.max(blockOpenFour, cell);
+                if (otc.isDoubleThreat()) blockDoubleThreat = Math.max(blockDoubleThreat, cell);
+            }
+            board.unprobe(r, c, -aiColor);
         }
 
-        if (win != null) return win;
-        if (blockWin != null) return blockWin;
-        if (openFour != null) return openFour;
-        if (blockOpenFour != null) return blockOpenFour;
-        if (blockDoubleThreat != null) return blockDoubleThreat;
-        if (doubleThreat != null) return doubleThreat;
+        int move = -1;
+        if (win >= 0) move = win;
+        else if (blockWin >= 0) move = blockWin;
+        else if (openFour >= 0) move = openFour;
+        else if (blockOpenFour >= 0) move = blockOpenFour;
+        else if (blockDoubleThreat >= 0) move = blockDoubleThreat;
+        else if (doubleThreat >= 0) move = doubleThreat;
 
-        return null;
+        return move >= 0 ? new int[]{move / BOARD_SIZE, move % BOARD_SIZE} : null;
     }
 
     // ==================== MOVE GENERATION ====================
+    // getCandidateMoves, quickScore, evaluate, makeMove and undoMove are
+    // package-private so the JMH benchmarks can time them one by one
+
+    /**
+     * Fills moveBuffer[ply] with candidate moves (cell indices), best first.
+     * @return The number of candidates, at most maxCandidates
+     */
+    int getCandidateMoves(int color, int maxCandidates, int preferredMove, int ply) {
+        moveGenerations++;
+        if (!timing) {
+            return generateCandidates(color, maxCandidates, preferredMove, ply);
+        }
+        long t = System.nanoTime();
+        int count = generateCandidates(color, maxCandidates, preferredMove, ply);
+        moveGenerationNs += System.nanoTime() - t;
+        return count;
+    }
 
-    private int[][] getCandidateMoves(int color, int maxCandidates, int[] preferredMove) {
-        Move[] moves = new Move[BOARD_SIZE * BOARD_SIZE];
+    private int generateCandidates(int color, int maxCandidates, int preferredMove, int ply) {
+        int[] moves = moveBuffer[ply];
+        int[] scores = scoreBuffer[ply];
         int count = 0;
         int neighborDist = getNeighborDistance();
-
-        for (int r = 0; r < BOARD_SIZE; r++) {
-            for (int c = 0; c < BOARD_SIZE; c++) {
-                if (board[r][c] != EMPTY) continue;
-                if (!hasNeighbor(r, c, neighborDist)) continue;
-
-                int score = quickScore(r, c, color);
-                moves[count++] = new Move(r, c, score);
+        int[] colorHistory = history[BitBoard.colorIndex(color)];
+        int[] plyKillers = killers[ply];
+
+        int frontierSize = board.frontierSize(neighborDist);
+        for (int i = 0; i < frontierSize; i++) {
+            int cell = board.frontierCell(neighborDist, i);
+            int score = quickScore(cell / BOARD_SIZE, cell % BOARD_SIZE, color);
+            if (score < SCORE_OPEN_THREE) {
+                if (cell == plyKillers[0]) score += KILLER_BONUS;
+                else if (cell == plyKillers[1]) score += KILLER_BONUS / 2;
+                if (historyMax > 0) score += (int) ((long) colorHistory[cell] * HISTORY_RANGE / historyMax);
             }
+            moves[count] = cell;
+            scores[count] = score;
+            count++;
         }
 
-        Arrays.sort(moves, 0, count, (a, b) -> Integer.compare(b.score, a.score));
+        // Partial selection sort of the moves we keep; frontier order is arbitrary,
+        // so equal scores fall back to row-major order
+        int limit = Math.min(count, maxCandidates);
+        for (int i = 0; i < limit; i++) {
+            int best = i;
+            for (int j = i + 1; j < count; j++) {
+                if (scores[j] > scores[best] || (scores[j] == scores[best] && moves[j] < moves[best])) {
+                    best = j;
+                }
+            }
+            swapMoves(moves, scores, i, best);
+        }
 
-        if (preferredMove != null) {
+        if (preferredMove >= 0) {
             for (int i = 0; i < count; i++) {
-                if (moves[i].r == preferredMove[0] && moves[i].c == preferredMove[1]) {
-                    Move tmp = moves[0];
-                    moves[0] = moves[i];
-                    moves[i] = tmp;
+                if (moves[i] == preferredMove) {
+                    swapMoves(moves, scores, 0, i);
                     break;
                 }
             }
         }
 
-        int resultCount = Math.min(count, maxCandidates);
-        int[][] result = new int[resultCount][2];
-        for (int i = 0; i < resultCount; i++) {
-            result[i][0] = moves[i].r;
-            result[i][1] = moves[i].c;
-        }
-        return result;
+        return limit;
     }
 
-    private int quickScore(int row, int col, int color) {
+    private static void swapMoves(int[] moves, int[] scores, int i, int j) {
+        int m = moves[i];
+        moves[i] = moves[j];
+        moves[j] = m;
+        int s = scores[i];
+        scores[i] = scores[j];
+        scores[j] = s;
+    }
+
+    int quickScore(int row, int col, int color) {
         int score = 0;
 
-        board[row][col] = color;
+        board.probe(row, col, color);
         if (isWinningPosition(row, col, color)) {
-            board[row][col] = EMPTY;
+            board.unprobe(row, col, color);
             return SCORE_WIN;
         }
-        ThreatCount tc = getThreatCount(row, col, color);
-        score += tc.openFour * SCORE_OPEN_FOUR;
-        score += tc.four * SCORE_FOUR;
-        score += tc.openThree * SCORE_OPEN_THREE;
-        board[row][col] = EMPTY;
+        // A three or four needs two more own stones on one of the lines
+        if (hasStonesNear(row, col, color, 3)) {
+            ThreatCount tc = getThreatCount(row, col, color);
+            score += tc.openFour * SCORE_OPEN_FOUR;
+            score += tc.four * SCORE_FOUR;
+            score += tc.openThree * SCORE_OPEN_THREE;
+        }
+        board.unprobe(row, col, color);
 
-        board[row][col] = -color;
+        board.probe(row, col, -color);
         if (isWinningPosition(row, col, -color)) {
-            board[row][col] = EMPTY;
+            board.unprobe(row, col, -color);
             return SCORE_WIN - 1;
         }
-        ThreatCount otc = getThreatCount(row, col, -color);
-        score += otc.openFour * SCORE_OPEN_FOUR;
-        score += otc.four * SCORE_FOUR;
-        score += otc.openThree * SCORE_OPEN_THREE;
-        board[row][col] = EMPTY;
+        if (hasStonesNear(row, col, -color, 3)) {
+            ThreatCount otc = getThreatCount(row, col, -color);
+            score += otc.openFour * SCORE_OPEN_FOUR;
+            score += otc.four * SCORE_FOUR;
+            score += otc.openThree * SCORE_OPEN_THREE;
+        }
+        board.unprobe(row, col, -color);
 
         int centerDist = Math.abs(row - 7) + Math.abs(col - 7);
         score += (14 - centerDist) * 3;
@@ -369,143 +1618,79 @@ public class AI {
         return score;
     }
 
-    private boolean hasNeighbor(int row, int col, int dist) {
-        int r0 = Math.max(0, row - dist);
-        int r1 = Math.min(BOARD_SIZE - 1, row + dist);
-        int c0 = Math.max(0, col - dist);
-        int c1 = Math.min(BOARD_SIZE - 1, col + dist);
-        for (int r = r0; r <= r1; r++) {
-            for (int c = c0; c <= c1; c++) {
-                if (board[r][c] != EMPTY) return true;
-            }
-        }
-        return false;
-    }
-
     private int getNeighborDistance() {
+        int stoneCount = board.getStoneCount();
         if (stoneCount < 6) return 1;
         if (stoneCount < 20) return 2;
         return 3;
     }
 
-    private boolean isBoardEmpty() {
-        for (int r = 0; r < BOARD_SIZE; r++) {
-            for (int c = 0; c < BOARD_SIZE; c++) {
-                if (board[r][c] != EMPTY) return false;
-            }
+    // ==================== EVALUATION ====================
+
+    int evaluate(int color) {
+        evaluations++;
+        if (!timing) {
+            return staticScore(color);
         }
-        return true;
+        long t = System.nanoTime();
+        int score = staticScore(color);
+        evaluationNs += System.nanoTime() - t;
+        return score;
     }
 
-    // ==================== EVALUATION ====================
-
-    private int evaluate(int color) {
+    private int staticScore(int color) {
         int myScore = evaluateLines(color);
         int oppScore = evaluateLines(-color);
         return myScore - (int)(oppScore * 1.1);
     }
 
     private int evaluateLines(int color) {
-        int idx = colorIndex(color);
-        int score = 0;
-        for (int r = 0; r < BOARD_SIZE; r++) score += rowScore[idx][r];
-        for (int c = 0; c < BOARD_SIZE; c++) score += colScore[idx][c];
-        for (int k = 0; k < BOARD_SIZE * 2 - 1; k++) score += diag1Score[idx][k];
-        for (int k = 0; k < BOARD_SIZE * 2 - 1; k++) score += diag2Score[idx][k];
-        return score;
+        return totalScore[colorIndex(color)];
     }
 
-    private int scoreLine(String line) {
-        int s = 0;
-        s += countPattern(line, "11111") * SCORE_WIN;
-        s += countPattern(line, "011110") * SCORE_OPEN_FOUR;
-        s += (countPattern(line, "211110") + countPattern(line, "011112")) * SCORE_FOUR;
-        s += countPattern(line, "01110") * SCORE_OPEN_THREE;
-        s += (countPattern(line, "010110") + countPattern(line, "011010")) * SCORE_OPEN_THREE;
-        s += (countPattern(line, "001110") + countPattern(line, "011100")) * SCORE_THREE;
-        s += (countPattern(line, "00110") + countPattern(line, "01100")) * SCORE_OPEN_TWO;
-        s += (countPattern(line, "01010") + countPattern(line, "010010")) * SCORE_TWO;
-        s += countPattern(line, "010") * SCORE_NEIGHBOR;
-        return s;
-    }
-
-    private int countPattern(String line, String pattern) {
-        int count = 0;
-        int idx = line.indexOf(pattern);
-        while (idx != -1) {
-            count++;
-            idx = line.indexOf(pattern, idx + 1);
-        }
-        return count;
-    }
-
-    private String buildLineStringRow(int row, int color) {
-        StringBuilder sb = new StringBuilder(BOARD_SIZE);
-        for (int c = 0; c < BOARD_SIZE; c++) {
-            sb.append(cellToChar(board[row][c], color));
-        }
-        return sb.toString();
-    }
-
-    private String buildLineStringCol(int col, int color) {
-        StringBuilder sb = new StringBuilder(BOARD_SIZE);
-        for (int r = 0; r < BOARD_SIZE; r++) {
-            sb.append(cellToChar(board[r][col], color));
-        }
-        return sb.toString();
-    }
-
-    private String buildLineStringDiag1(int k, int color) {
-        StringBuilder sb = new StringBuilder();
-        for (int r = 0; r < BOARD_SIZE; r++) {
-            int c = k - r;
-            if (c >= 0 && c < BOARD_SIZE) {
-                sb.append(cellToChar(board[r][c], color));
-            }
-        }
-        return sb.toString();
-    }
-
-    private String buildLineStringDiag2(int k, int color) {
-        StringBuilder sb = new StringBuilder();
-        for (int r = 0; r < BOARD_SIZE; r++) {
-            int c = r - k;
-            if (c >= 0 && c < BOARD_SIZE) {
-                sb.append(cellToChar(board[r][c], color));
-            }
-        }
-        return sb.toString();
-    }
-
-    private char cellToChar(int cell, int color) {
-        if (cell == color) return '1';
-        if (cell == EMPTY) return '0';
-        return '2';
+    private int scoreLine(int color, int dir, int line) {
+        int lo = BitBoard.lineLo(dir, line);
+        int hi = BitBoard.lineHi(dir, line);
+        if (hi - lo + 1 < 5) return 0;
+        return LINE_PATTERNS.score(board.lineMaskAt(color, dir, line),
+            board.lineMaskAt(-color, dir, line), lo, hi);
     }
 
     // ==================== THREAT ANALYSIS ====================
 
+    /**
+     * Counts the threats made by the stone at (row, col).
+     * The returned object is reused by the next call.
+     */
     private ThreatCount getThreatCount(int row, int col, int color) {
-        ThreatCount tc = new ThreatCount();
+        return getThreatCount(board, row, col, color, threatCount, lineBuffer);
+    }
+
+    /**
+     * Counts the threats made by the stone at (row, col) into tc.
+     * @param line Scratch buffer of 9 cells
+     * @return tc
+     */
+    static ThreatCount getThreatCount(BitBoard boardState, int row, int col, int color,
+                                      ThreatCount tc, char[] line) {
+        tc.openFour = 0;
+        tc.four = 0;
+        tc.openThree = 0;
         for (int dir = 0; dir < 4; dir++) {
-            char[] line = buildLine(row, col, dir, board, color, 4);
+            boardState.fillLine(row, col, dir, color, 4, line);
             if (containsPatternWithCenter(line, OPEN_FOUR_PATTERN, 4)) {
                 tc.openFour++;
             }
             if (hasFourInLine(line, 4)) {
                 tc.four++;
             }
-            if (hasOpenThree(line, 4)) {
+            if (hasOpenThreeStatic(line, 4)) {
                 tc.openThree++;
             }
         }
         return tc;
     }
 
-    private boolean hasOpenThree(char[] line, int centerIdx) {
-        return hasOpenThreeStatic(line, centerIdx);
-    }
-
     private static boolean hasFourInLine(char[] line, int centerIdx) {
         // Any 5-window containing center with 4 stones + 1 empty, no block.
         for (int start = 0; start <= line.length - 5; start++) {
@@ -526,78 +1711,62 @@ public class AI {
         return false;
     }
 
-    private boolean containsPatternWithCenter(char[] line, String pattern, int centerIdx) {
-        String s = new String(line);
-        int idx = s.indexOf(pattern);
-        while (idx != -1) {
-            int end = idx + pattern.length() - 1;
-            if (centerIdx >= idx && centerIdx <= end && line[centerIdx] == '1') return true;
-            idx = s.indexOf(pattern, idx + 1);
+    private static boolean containsPatternWithCenter(char[] line, String pattern, int centerIdx) {
+        if (line[centerIdx] != '1') return false;
+        int len = pattern.length();
+        int last = Math.min(centerIdx, line.length - len);
+        for (int start = Math.max(0, centerIdx - len + 1); start <= last; start++) {
+            if (matchesAt(line, pattern, start)) return true;
         }
         return false;
     }
 
+    private static boolean matchesAt(char[] line, String pattern, int start) {
+        for (int i = 0; i < pattern.length(); i++) {
+            if (line[start + i] != pattern.charAt(i)) return false;
+        }
+        return true;
+    }
+
     // ==================== WIN CHECK ====================
 
     private boolean isWinningPosition(int row, int col, int color) {
         for (int dir = 0; dir < 4; dir++) {
-            if (countConsecutive(row, col, dir, board, color) >= 5) return true;
+            if (board.countConsecutive(row, col, dir, color) >= 5) return true;
         }
         return false;
     }
 
-    private int checkWinner() {
-        for (int r = 0; r < BOARD_SIZE; r++) {
-            for (int c = 0; c < BOARD_SIZE; c++) {
-                int color = board[r][c];
-                if (color == EMPTY) continue;
-                for (int dir = 0; dir < 4; dir++) {
-                    int count = countConsecutive(r, c, dir, board, color);
-                    if (count >= 5) {
-                        if (color == BLACK && count > 5) continue;
-                        return color;
-                    }
-                }
-            }
-        }
-        return EMPTY;
-    }
-
     // ==================== BAN HAND (FOR BLACK) ====================
 
     public static boolean isFoulMove(int row, int col, int[][] boardState) {
-        if (boardState[row][col] != EMPTY) return true;
-        boardState[row][col] = BLACK;
-
-        boolean win = false;
-        for (int dir = 0; dir < 4; dir++) {
-            int count = countConsecutive(row, col, dir, boardState, BLACK);
-            if (count == 5) {
-                win = true;
-                break;
-            }
-        }
+        return isFoul(row, col, BitBoard.fromArray(boardState), new char[9]);
+    }
 
-        boolean foul;
-        if (!win) {
-            foul = checkOverline(row, col, boardState) ||
-                   checkDoubleFour(row, col, boardState) ||
-                   checkDoubleThree(row, col, boardState);
-        } else {
-            foul = checkOverline(row, col, boardState);
+    private boolean isFoulMoveInternal(int row, int col) {
+        foulChecks++;
+        if (!timing) {
+            return isFoul(row, col, board, lineBuffer);
         }
-
-        boardState[row][col] = EMPTY;
+        long t = System.nanoTime();
+        boolean foul = isFoul(row, col, board, lineBuffer);
+        foulCheckNs += System.nanoTime() - t;
         return foul;
     }
 
-    private boolean isFoulMoveInternal(int row, int col) {
-        if (board[row][col] != EMPTY) return true;
-        board[row][col] = BLACK;
+    /**
+     * Checks the ban-hand rules for a black stone at (row, col); only a taken
+     * cell is a foul when the board plays without them.
+     * @param line Scratch buffer of 9 cells
+     */
+    static boolean isFoul(int row, int col, BitBoard boardState, char[] line) {
+        if (!boardState.isEmpty(row, col)) return true;
+        if (!boardState.isBanHand()) return false;
+        boardState.probe(row, col, BLACK);
 
         boolean win = false;
         for (int dir = 0; dir < 4; dir++) {
-            int count = countConsecutive(row, col, dir, board, BLACK);
+            int count = boardState.countConsecutive(row, col, dir, BLACK);
             if (count == 5) {
                 win = true;
                 break;
@@ -606,138 +1775,118 @@ public class AI {
 
         boolean foul;
         if (!win) {
-            foul = checkOverline(row, col, board) ||
-                   checkDoubleFour(row, col, board) ||
-                   checkDoubleThree(row, col, board);
+            foul = checkOverline(row, col, boardState) ||
+                   checkDoubleFour(row, col, boardState, line) ||
+                   checkDoubleThree(row, col, boardState, line);
         } else {
-            foul = checkOverline(row, col, board);
+            foul = checkOverline(row, col, boardState);
         }
 
-        board[row][col] = EMPTY;
+        boardState.unprobe(row, col, BLACK);
         return foul;
     }
 
-    private static boolean checkOverline(int row, int col, int[][] boardState) {
+    private static boolean checkOverline(int row, int col, BitBoard boardState) {
         for (int dir = 0; dir < 4; dir++) {
-            if (countConsecutive(row, col, dir, boardState, BLACK) > 5) return true;
+            if (boardState.countConsecutive(row, col, dir, BLACK) > 5) return true;
         }
         return false;
     }
 
-    private static boolean checkDoubleFour(int row, int col, int[][] boardState) {
+    private static boolean checkDoubleFour(int row, int col, BitBoard boardState, char[] line) {
         int count = 0;
         for (int dir = 0; dir < 4; dir++) {
-            char[] line = buildLine(row, col, dir, boardState, BLACK, 4);
+            boardState.fillLine(row, col, dir, BLACK, 4, line);
             if (hasFourInLine(line, 4)) count++;
         }
         return count >= 2;
     }
 
-    private static boolean checkDoubleThree(int row, int col, int[][] boardState) {
+    private static boolean checkDoubleThree(int row, int col, BitBoard boardState, char[] line) {
         int count = 0;
         for (int dir = 0; dir < 4; dir++) {
-            char[] line = buildLine(row, col, dir, boardState, BLACK, 4);
+            boardState.fillLine(row, col, dir, BLACK, 4, line);
             if (hasOpenThreeStatic(line, 4)) count++;
         }
         return count >= 2;
     }
 
     private static boolean hasOpenThreeStatic(char[] line, int centerIdx) {
-        String s = new String(line);
         for (String p : OPEN_THREE_PATTERNS) {
-            int idx = s.indexOf(p);
-            while (idx != -1) {
-                int end = idx + p.length() - 1;
-                if (centerIdx >= idx && centerIdx <= end && line[centerIdx] == '1') return true;
-                idx = s.indexOf(p, idx + 1);
-            }
+            if (containsPatternWithCenter(line, p, centerIdx)) return true;
         }
         return false;
     }
 
-    // ==================== BOARD / LINE HELPERS ====================
+    // ==================== MOVE APPLY/UNDO ====================
 
-    private static int countConsecutive(int row, int col, int dir, int[][] boardState, int color) {
-        int count = 1;
+    void makeMove(int row, int col, int color) {
+        board.place(row, col, color);
+        rescoreLines(row, col);
+    }
 
-        int r = row + DR[dir];
-        int c = col + DC[dir];
-        while (isValid(r, c) && boardState[r][c] == color) {
-            count++;
-            r += DR[dir];
-            c += DC[dir];
-        }
+    void undoMove(int row, int col, int color) {
+        board.remove(row, col, color);
+        rescoreLines(row, col);
+    }
 
-        r = row - DR[dir];
-        c = col - DC[dir];
-        while (isValid(r, c) && boardState[r][c] == color) {
-            count++;
-            r -= DR[dir];
-            c -= DC[dir];
+    private void rescoreLines(int row, int col) {
+        if (!timing) {
+            updateLineScores(row, col);
+            return;
         }
-
-        return count;
+        long t = System.nanoTime();
+        updateLineScores(row, col);
+        evaluationNs += System.nanoTime() - t;
     }
 
-    private static char[] buildLine(int row, int col, int dir, int[][] boardState, int color, int range) {
-        int len = range * 2 + 1;
-        char[] line = new char[len];
-        int center = range;
-        for (int i = -range; i <= range; i++) {
-            int r = row + i * DR[dir];
-            int c = col + i * DC[dir];
-            if (!isValid(r, c)) {
-                line[center + i] = '2';
-            } else {
-                int v = boardState[r][c];
-                if (v == color) line[center + i] = '1';
-                else if (v == EMPTY) line[center + i] = '0';
-                else line[center + i] = '2';
-            }
+    /**
+     * Places a stone on the engine's own board between searches (see EngineSession).
+     * Hash and line scores are updated incrementally.
+     */
+    void placeStone(int row, int col, int color) {
+        if (!BitBoard.isValid(row, col) || !board.isEmpty(row, col)) {
+            throw new IllegalArgumentException("cell " + row + "," + col + " is not empty");
+        }
+        if (color != BLACK && color != WHITE) {
+            throw new IllegalArgumentException("color must be BLACK or WHITE");
         }
-        return line;
+        makeMove(row, col, color);
     }
 
-    private static boolean isValid(int row, int col) {
-        return row >= 0 && row < BOARD_SIZE && col >= 0 && col < BOARD_SIZE;
+    /**
+     * Removes a stone from the engine's own board between searches (see EngineSession).
+     */
+    void removeStone(int row, int col) {
+        int color = BitBoard.isValid(row, col) ? board.get(row, col) : EMPTY;
+        if (color == EMPTY) {
+            throw new IllegalArgumentException("cell " + row + "," + col + " is empty");
+        }
+        undoMove(row, col, color);
     }
 
-    // ==================== MOVE APPLY/UNDO ====================
-
-    private void makeMove(int row, int col, int color) {
-        board[row][col] = color;
-        zobristKey ^= ZOBRIST[row][col][color == BLACK ? 0 : 1];
-        stoneCount++;
-        updateLineScores(row, col);
+    boolean isBanHand() {
+        return board.isBanHand();
     }
 
-    private void undoMove(int row, int col, int color) {
-        board[row][col] = EMPTY;
-        zobristKey ^= ZOBRIST[row][col][color == BLACK ? 0 : 1];
-        stoneCount--;
-        updateLineScores(row, col);
+    /**
+     * Sets whether black plays by the ban-hand rules, between searches (see
+     * EngineSession). A change forgets what earlier searches learned under
+     * the other rules.
+     */
+    void setBanHand(boolean enabled) {
+        if (board.isBanHand() != enabled) {
+            board.setBanHand(enabled);
+            clearSearchState();
+        }
     }
 
-    private long computeHash() {
-        long h = 0L;
-        for (int r = 0; r < BOARD_SIZE; r++) {
-            for (int c = 0; c < BOARD_SIZE; c++) {
-                int v = board[r][c];
-                if (v == BLACK) h ^= ZOBRIST[r][c][0];
-                else if (v == WHITE) h ^= ZOBRIST[r][c][1];
-            }
-        }
-        return h;
+    int getStone(int row, int col) {
+        return board.get(row, col);
     }
 
-    private int computeStoneCount() {
-        int count = 0;
-        for (int r = 0; r < BOARD_SIZE; r++) {
-            for (int c = 0; c < BOARD_SIZE; c++) {
-                if (board[r][c] != EMPTY) count++;
-            }
-        }
-        return count;
+    int getPlayerColor() {
+        return -aiColor;
     }
 
     private int colorIndex(int color) {
@@ -745,43 +1894,36 @@ public class AI {
     }
 
     private void rebuildAllScores() {
-        for (int color : new int[]{BLACK, WHITE}) {
-            int idx = colorIndex(color);
-            for (int r = 0; r < BOARD_SIZE; r++) {
-                rowScore[idx][r] = scoreLine(buildLineStringRow(r, color));
-            }
-            for (int c = 0; c < BOARD_SIZE; c++) {
-                colScore[idx][c] = scoreLine(buildLineStringCol(c, color));
-            }
-            for (int k = 0; k <= (BOARD_SIZE - 1) * 2; k++) {
-                String line = buildLineStringDiag1(k, color);
-                diag1Score[idx][k] = line.length() >= 5 ? scoreLine(line) : 0;
-            }
-            for (int k = -(BOARD_SIZE - 1); k <= BOARD_SIZE - 1; k++) {
-                String line = buildLineStringDiag2(k, color);
-                int idx2 = k + (BOARD_SIZE - 1);
-                diag2Score[idx][idx2] = line.length() >= 5 ? scoreLine(line) : 0;
+        for (int idx = 0; idx < 2; idx++) {
+            int color = idx == 0 ? BLACK : WHITE;
+            totalScore[idx] = 0;
+            for (int dir = 0; dir < 4; dir++) {
+                for (int line = 0; line < BOARD_SIZE * 2 - 1; line++) {
+                    int score = scoreLine(color, dir, line);
+                    lineScore[idx][dir][line] = score;
+                    totalScore[idx] += score;
+                }
             }
         }
     }
 
     private void updateLineScores(int row, int col) {
-        int diag1 = row + col;
-        int diag2 = row - col + (BOARD_SIZE - 1);
-        for (int color : new int[]{BLACK, WHITE}) {
-            int idx = colorIndex(color);
-            rowScore[idx][row] = scoreLine(buildLineStringRow(row, color));
-            colScore[idx][col] = scoreLine(buildLineStringCol(col, color));
-            String line1 = buildLineStringDiag1(diag1, color);
-            diag1Score[idx][diag1] = line1.length() >= 5 ? scoreLine(line1) : 0;
-            int k2 = row - col;
-            String line2 = buildLineStringDiag2(k2, color);
-            diag2Score[idx][diag2] = line2.length() >= 5 ? scoreLine(line2) : 0;
+        for (int idx = 0; idx < 2; idx++) {
+            int color = idx == 0 ? BLACK : WHITE;
+            for (int dir = 0; dir < 4; dir++) {
+                int line = BitBoard.lineIndex(dir, row, col);
+                int score = scoreLine(color, dir, line);
+                totalScore[idx] += score - lineScore[idx][dir][line];
+                lineScore[idx][dir][line] = score;
+            }
         }
     }
 
     private boolean isTimeUp() {
-        if (!timeUp && System.currentTimeMillis() >= endTimeMs) {
+        if (!timeUp && (stopRequested
+                || (nodeLimit > 0 && nodesEvaluated + quiescenceNodes + solverNodes >= nodeLimit)
+                || (!fixedBudget && (++timeChecks & (TIME_CHECK_INTERVAL - 1)) == 0
+                    && System.nanoTime() - endTimeNs >= 0))) {
             timeUp = true;
         }
         return timeUp;
@@ -789,7 +1931,7 @@ public class AI {
 
     // ==================== INNER CLASSES ====================
 
-    private static class ThreatCount {
+    static class ThreatCount {
         int openFour = 0;
         int four = 0;
         int openThree = 0;
@@ -802,34 +1944,4 @@ public class AI {
             return false;
         }
     }
-
-    private static class TTEntry {
-        static final int EXACT = 0;
-        static final int LOWER = 1;
-        static final int UPPER = -1;
-
-        final int value;
-        final int depth;
-        final int flag;
-        final int[] bestMove;
-
-        TTEntry(int value, int depth, int flag, int[] bestMove) {
-            this.value = value;
-            this.depth = depth;
-            this.flag = flag;
-            this.bestMove = bestMove;
-        }
-    }
-
-    private static class Move {
-        final int r;
-        final int c;
-        final int score;
-
-        Move(int r, int c, int score) {
-            this.r = r;
-            this.c = c;
-            this.score = score;
-        }
-    }
 }
@@ -0,0 +1,106 @@
+/**
+ * Command-line search benchmark.
+ * Runs the AI with its normal time limit on a fixed set of positions for
+ * 1, 2, 4, ... threads, so Lazy SMP scaling can be compared. Helpers add
+ * nodes without adding depth one for one, so the measure is time to depth:
+ * how soon each position reaches the depth one thread completes, and which
+ * depth and move each thread count reaches in the time limit. Nodes (main
+ * search and quiescence, all threads) are shown for reference.
+ *
+ * Usage: java -cp bin Benchmark [difficulty] [maxThreads]
+ */
+public class Benchmark {
+
+    // Positions as alternating moves starting with black: {row, col, row, col, ...};
+    // also the position suite of the JMH benchmarks. None of them is decided by the
+    // threat solvers or a forced reply, so each one runs the full search
+    static final String[] NAMES = {"opening", "midgame", "tactical"};
+    static final int[][] POSITIONS = {
+        {7, 7, 7, 8, 8, 7},
+        {7, 7, 7, 8, 8, 9, 6, 8, 9, 10, 6, 9, 9, 8, 5, 8, 4, 8},
+        {7, 7, 7, 8, 8, 9, 6, 8, 9, 10, 6, 9, 9, 8, 5, 8, 4, 8, 6, 7, 6, 10, 7, 10, 8, 11},
+    };
+
+    // Deeper than any search goes (depth limits are capped at half the engine's ply limit)
+    private static final int MAX_DEPTH = 32;
+
+    public static void main(String[] args) {
+        int difficulty = args.length > 0 ? Integer.parseInt(args[0]) : 2;
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1])
+            : Runtime.getRuntime().availableProcessors();
+        AI.setDifficulty(difficulty);
+
+        // Warm-up pass so the JIT does not skew the single-thread baseline
+        AI.setSearchThreads(1);
+        for (int i = 0; i < POSITIONS.length; i++) {
+            search(i);
+        }
+
+        // Depth completed by one thread per position, and the time it took
+        int[] targetDepth = new int[POSITIONS.length];
+        long[] baseNs = new long[POSITIONS.length];
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            AI.setSearchThreads(threads);
+            for (int i = 0; i < POSITIONS.length; i++) {
+                Run run = search(i);
+                if (threads == 1) {
+                    targetDepth[i] = run.depth;
+                    baseNs[i] = run.depthNs[run.depth];
+                }
+                long toDepth = run.depthNs[targetDepth[i]];
+                String time = toDepth > 0
+                    ? String.format("%6d ms  x%.2f", toDepth / 1_000_000, (double) baseNs[i] / toDepth)
+                    : "   not reached";
+                long nps = run.elapsedNs > 0 ? run.nodes * 1_000_000_000L / run.elapsedNs : 0;
+                System.out.printf("threads %2d %-9s depth %2d move %2d,%-2d  to depth %2d %s  %10d nodes %9d nodes/s%n",
+                    threads, NAMES[i], run.depth, run.row, run.col, targetDepth[i], time, run.nodes, nps);
+            }
+        }
+    }
+
+    /**
+     * One timed search of a position.
+     */
+    private static class Run {
+        int row;
+        int col;
+        int depth;
+        long nodes;
+        long elapsedNs;
+        // Time from the start of the search until each depth completed, 0 if it did not
+        final long[] depthNs = new long[MAX_DEPTH + 1];
+    }
+
+    /**
+     * Searches a position on a new engine with the difficulty's time limit.
+     */
+    private static Run search(int position) {
+        int[][] board = new int[AI.BOARD_SIZE][AI.BOARD_SIZE];
+        int lastColor = loadPosition(POSITIONS[position], board);
+        AI ai = new AI(board, lastColor);
+        Run run = new Run();
+        long start = System.nanoTime();
+        int[] move = ai.getResult(new SearchHandle(0, 0, (depth, row, col, score) -> {
+            run.depthNs[depth] = System.nanoTime() - start;
+        }));
+        run.elapsedNs = System.nanoTime() - start;
+        run.row = move[0];
+        run.col = move[1];
+        run.depth = ai.getLastStats().getDepth();
+        run.nodes = (long) ai.getNodesEvaluated() + ai.getQuiescenceNodes();
+        return run;
+    }
+
+    /**
+     * Plays the moves of a position onto an empty board.
+     * @return The colour of the side that moved last
+     */
+    static int loadPosition(int[] moves, int[][] board) {
+        int color = AI.WHITE;
+        for (int i = 0; i + 1 < moves.length; i += 2) {
+            color = -color;
+            board[moves[i]][moves[i + 1]] = color;
+        }
+        return color;
+    }
+}
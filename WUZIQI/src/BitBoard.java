@@ -0,0 +1,427 @@
+/**
+ * Bitboard position used by the AI search.
+ * Every colour keeps one long mask per row, column and diagonal, so the
+ * line queries used in the search (runs, windows, neighbours, fives)
+ * become shift/mask operations instead of cell-by-cell walks.
+ *
+ * The board also keeps a candidate frontier: for every radius 1..MAX_NEAR,
+ * a reference count of stones around each cell and the list of empty cells
+ * with a non-zero count. It is updated by place/remove, so move generation
+ * costs the size of the frontier rather than the board area.
+ *
+ * Directions follow the AI convention: 0 = (0,1), 1 = (1,1), 2 = (1,0), 3 = (1,-1).
+ * Along every direction the bit position grows with the step, so the cell
+ * i steps away from (row, col) sits at bit linePos(dir, row, col) + i.
+ */
+public class BitBoard {
+
+    public static final int BOARD_SIZE = 15;
+    public static final int BLACK = -1;
+    public static final int WHITE = 1;
+    public static final int EMPTY = 0;
+
+    private static final int LINE_COUNT = BOARD_SIZE * 2 - 1;
+    private static final int CELLS = BOARD_SIZE * BOARD_SIZE;
+
+    // Largest neighbour radius tracked by the frontier
+    public static final int MAX_NEAR = 3;
+
+    // Zobrist hashing
+    private static final long[][][] ZOBRIST = new long[BOARD_SIZE][BOARD_SIZE][2];
+    static {
+        java.util.Random r = new java.util.Random(1337);
+        for (int i = 0; i < BOARD_SIZE; i++) {
+            for (int j = 0; j < BOARD_SIZE; j++) {
+                ZOBRIST[i][j][0] = r.nextLong(); // BLACK
+                ZOBRIST[i][j][1] = r.nextLong(); // WHITE
+            }
+        }
+    }
+
+    // First and last valid bit of every line, indexed [dir][line]
+    private static final int[][] LINE_LO = new int[4][LINE_COUNT];
+    private static final int[][] LINE_HI = new int[4][LINE_COUNT];
+    static {
+        for (int dir = 0; dir < 4; dir++) {
+            for (int line = 0; line < LINE_COUNT; line++) {
+                LINE_LO[dir][line] = BOARD_SIZE;
+                LINE_HI[dir][line] = -1;
+            }
+        }
+        for (int r = 0; r < BOARD_SIZE; r++) {
+            for (int c = 0; c < BOARD_SIZE; c++) {
+                for (int dir = 0; dir < 4; dir++) {
+                    int line = lineIndex(dir, r, c);
+                    int pos = linePos(dir, r, c);
+                    LINE_LO[dir][line] = Math.min(LINE_LO[dir][line], pos);
+                    LINE_HI[dir][line] = Math.max(LINE_HI[dir][line], pos);
+                }
+            }
+        }
+    }
+
+    // Line masks, indexed [colour][dir][line]
+    private final long[][][] lines = new long[2][4][LINE_COUNT];
+    private long hash = 0L;
+    private int stoneCount = 0;
+
+    // Candidate frontier, indexed [radius - 1][...]
+    private final int[][] nearCount = new int[MAX_NEAR][CELLS];
+    private final int[][] frontier = new int[MAX_NEAR][CELLS];
+    private final int[][] frontierIndex = new int[MAX_NEAR][CELLS];
+    private final int[] frontierSize = new int[MAX_NEAR];
+
+    // Ban-hand rules for black: its fouls are forbidden and an overline is no win
+    private boolean banHand = true;
+
+    public BitBoard() {
+        for (int d = 0; d < MAX_NEAR; d++) {
+            java.util.Arrays.fill(frontierIndex[d], -1);
+        }
+    }
+
+    /**
+     * Builds a bitboard from a plain board array.
+     * @param boardState Board cells (BLACK, WHITE or EMPTY)
+     * @return The equivalent bitboard
+     */
+    public static BitBoard fromArray(int[][] boardState) {
+        BitBoard b = new BitBoard();
+        for (int r = 0; r < BOARD_SIZE; r++) {
+            for (int c = 0; c < BOARD_SIZE; c++) {
+                if (boardState[r][c] != EMPTY) {
+                    b.place(r, c, boardState[r][c]);
+                }
+            }
+        }
+        return b;
+    }
+
+    /**
+     * Creates an independent copy of this position.
+     */
+    public BitBoard copy() {
+        BitBoard b = new BitBoard();
+        for (int ci = 0; ci < 2; ci++) {
+            for (int dir = 0; dir < 4; dir++) {
+                System.arraycopy(lines[ci][dir], 0, b.lines[ci][dir], 0, LINE_COUNT);
+            }
+        }
+        b.hash = hash;
+        b.stoneCount = stoneCount;
+        for (int d = 0; d < MAX_NEAR; d++) {
+            System.arraycopy(nearCount[d], 0, b.nearCount[d], 0, CELLS);
+            System.arraycopy(frontier[d], 0, b.frontier[d], 0, CELLS);
+            System.arraycopy(frontierIndex[d], 0, b.frontierIndex[d], 0, CELLS);
+        }
+        System.arraycopy(frontierSize, 0, b.frontierSize, 0, MAX_NEAR);
+        b.banHand = banHand;
+        return b;
+    }
+
+    // ==================== GEOMETRY ====================
+
+    static int colorIndex(int color) {
+        return color == BLACK ? 0 : 1;
+    }
+
+    static int lineIndex(int dir, int row, int col) {
+        switch (dir) {
+            case 0: return row;
+            case 1: return row - col + (BOARD_SIZE - 1);
+            case 2: return col;
+            default: return row + col;
+        }
+    }
+
+    static int linePos(int dir, int row, int col) {
+        return dir == 0 ? col : row;
+    }
+
+    static int lineLo(int dir, int line) {
+        return LINE_LO[dir][line];
+    }
+
+    static int lineHi(int dir, int line) {
+        return LINE_HI[dir][line];
+    }
+
+    static boolean isValid(int row, int col) {
+        return row >= 0 && row < BOARD_SIZE && col >= 0 && col < BOARD_SIZE;
+    }
+
+    // ==================== CELLS ====================
+
+    public int get(int row, int col) {
+        long bit = 1L << col;
+        if ((lines[0][0][row] & bit) != 0) return BLACK;
+        if ((lines[1][0][row] & bit) != 0) return WHITE;
+        return EMPTY;
+    }
+
+    public boolean isEmpty(int row, int col) {
+        return ((lines[0][0][row] | lines[1][0][row]) & (1L << col)) == 0;
+    }
+
+    /**
+     * Places a stone on an empty cell.
+     */
+    public void place(int row, int col, int color) {
+        toggle(row, col, color);
+        stoneCount++;
+        int cell = row * BOARD_SIZE + col;
+        for (int d = 0; d < MAX_NEAR; d++) {
+            frontierRemove(d, cell);
+        }
+        updateNear(row, col, 1);
+    }
+
+    /**
+     * Removes a stone previously placed with {@link #place}.
+     */
+    public void remove(int row, int col, int color) {
+        toggle(row, col, color);
+        stoneCount--;
+        updateNear(row, col, -1);
+        int cell = row * BOARD_SIZE + col;
+        for (int d = 0; d < MAX_NEAR; d++) {
+            if (nearCount[d][cell] > 0) frontierAdd(d, cell);
+        }
+    }
+
+    /**
+     * Places a stone for a short probe that is undone with {@link #unprobe}
+     * before the board is used again. Only line masks and the hash change;
+     * the stone count and frontier are left untouched.
+     */
+    public void probe(int row, int col, int color) {
+        toggle(row, col, color);
+    }
+
+    /**
+     * Removes a stone placed with {@link #probe}.
+     */
+    public void unprobe(int row, int col, int color) {
+        toggle(row, col, color);
+    }
+
+    private void toggle(int row, int col, int color) {
+        int ci = colorIndex(color);
+        long[][] own = lines[ci];
+        own[0][row] ^= 1L << col;
+        own[1][row - col + (BOARD_SIZE - 1)] ^= 1L << row;
+        own[2][col] ^= 1L << row;
+        own[3][row + col] ^= 1L << row;
+        hash ^= ZOBRIST[row][col][ci];
+    }
+
+    private void updateNear(int row, int col, int delta) {
+        int r0 = Math.max(0, row - MAX_NEAR);
+        int r1 = Math.min(BOARD_SIZE - 1, row + MAX_NEAR);
+        int c0 = Math.max(0, col - MAX_NEAR);
+        int c1 = Math.min(BOARD_SIZE - 1, col + MAX_NEAR);
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                int dist = Math.max(Math.abs(r - row), Math.abs(c - col));
+                if (dist == 0) continue;
+                int cell = r * BOARD_SIZE + c;
+                boolean empty = isEmpty(r, c);
+                for (int d = dist - 1; d < MAX_NEAR; d++) {
+                    int n = nearCount[d][cell] += delta;
+                    if (!empty) continue;
+                    if (n == 1 && delta > 0) frontierAdd(d, cell);
+                    else if (n == 0) frontierRemove(d, cell);
+                }
+            }
+        }
+    }
+
+    private void frontierAdd(int d, int cell) {
+        if (frontierIndex[d][cell] >= 0) return;
+        frontierIndex[d][cell] = frontierSize[d];
+        frontier[d][frontierSize[d]++] = cell;
+    }
+
+    private void frontierRemove(int d, int cell) {
+        int i = frontierIndex[d][cell];
+        if (i < 0) return;
+        int last = frontier[d][--frontierSize[d]];
+        frontier[d][i] = last;
+        frontierIndex[d][last] = i;
+        frontierIndex[d][cell] = -1;
+    }
+
+    /**
+     * Puts the frontier back in the order fromArray gives the same position.
+     * Moves and undos permute it, which changes the order of equally scored
+     * candidates, so a search after many moves can differ from one on a
+     * freshly built board.
+     */
+    void resetFrontierOrder() {
+        int[][] cells = new int[BOARD_SIZE][BOARD_SIZE];
+        for (int r = 0; r < BOARD_SIZE; r++) {
+            for (int c = 0; c < BOARD_SIZE; c++) {
+                cells[r][c] = get(r, c);
+            }
+        }
+        BitBoard fresh = fromArray(cells);
+        for (int d = 0; d < MAX_NEAR; d++) {
+            System.arraycopy(fresh.frontier[d], 0, frontier[d], 0, CELLS);
+            System.arraycopy(fresh.frontierIndex[d], 0, frontierIndex[d], 0, CELLS);
+        }
+        System.arraycopy(fresh.frontierSize, 0, frontierSize, 0, MAX_NEAR);
+    }
+
+    /**
+     * Gets the number of empty cells within a radius of some stone.
+     * @param dist Radius, 1..MAX_NEAR
+     */
+    public int frontierSize(int dist) {
+        return frontierSize[dist - 1];
+    }
+
+    /**
+     * Gets a frontier cell as row * BOARD_SIZE + col; order is unspecified.
+     * @param dist Radius, 1..MAX_NEAR
+     * @param i Index below frontierSize(dist)
+     */
+    public int frontierCell(int dist, int i) {
+        return frontier[dist - 1][i];
+    }
+
+    public long getHash() {
+        return hash;
+    }
+
+    public int getStoneCount() {
+        return stoneCount;
+    }
+
+    /**
+     * Gets the mask of a colour on the line through (row, col) in a direction.
+     */
+    public long lineMask(int color, int dir, int row, int col) {
+        return lines[colorIndex(color)][dir][lineIndex(dir, row, col)];
+    }
+
+    /**
+     * Gets the mask of a colour on a line given by its index.
+     */
+    long lineMaskAt(int color, int dir, int line) {
+        return lines[colorIndex(color)][dir][line];
+    }
+
+    // ==================== LINE QUERIES ====================
+
+    /**
+     * Counts the run of a colour through (row, col) in a direction,
+     * counting the cell itself whether or not it is occupied.
+     */
+    public int countConsecutive(int row, int col, int dir, int color) {
+        long m = lineMask(color, dir, row, col);
+        int p = linePos(dir, row, col);
+        return 1 + runAbove(m, p) + runBelow(m, p);
+    }
+
+    private static int runAbove(long m, int p) {
+        return Long.numberOfTrailingZeros(~(m >>> (p + 1)));
+    }
+
+    private static int runBelow(long m, int p) {
+        if (p == 0) return 0;
+        return Math.min(p, Long.numberOfLeadingZeros(~m << (64 - p)));
+    }
+
+    /**
+     * Extracts the cells around (row, col) in a direction as pattern characters:
+     * '1' = colour, '0' = empty, '2' = opponent or off-board.
+     * @param out Buffer of length range * 2 + 1
+     */
+    public void fillLine(int row, int col, int dir, int color, int range, char[] out) {
+        int line = lineIndex(dir, row, col);
+        int p = linePos(dir, row, col);
+        int lo = LINE_LO[dir][line];
+        int hi = LINE_HI[dir][line];
+        long own = lines[colorIndex(color)][dir][line];
+        long opp = lines[colorIndex(-color)][dir][line];
+        for (int i = -range; i <= range; i++) {
+            int q = p + i;
+            char ch;
+            if (q < lo || q > hi) ch = '2';
+            else if ((own >>> q & 1L) != 0) ch = '1';
+            else if ((opp >>> q & 1L) != 0) ch = '2';
+            else ch = '0';
+            out[range + i] = ch;
+        }
+    }
+
+    /**
+     * Checks whether any stone lies within a square of the given radius.
+     */
+    public boolean hasNeighbor(int row, int col, int dist) {
+        int c0 = Math.max(0, col - dist);
+        int c1 = Math.min(BOARD_SIZE - 1, col + dist);
+        long window = ((1L << (c1 + 1)) - 1) & ~((1L << c0) - 1);
+        int r0 = Math.max(0, row - dist);
+        int r1 = Math.min(BOARD_SIZE - 1, row + dist);
+        for (int r = r0; r <= r1; r++) {
+            if (((lines[0][0][r] | lines[1][0][r]) & window) != 0) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Gets whether black plays by the ban-hand rules (the default).
+     */
+    public boolean isBanHand() {
+        return banHand;
+    }
+
+    /**
+     * Sets whether black plays by the ban-hand rules; without them black
+     * has no fouls and wins with an overline like white.
+     */
+    public void setBanHand(boolean enabled) {
+        banHand = enabled;
+    }
+
+    /**
+     * Checks whether the stone at (row, col) is part of a winning line.
+     * Only the last move can create a new five, so the search uses this
+     * instead of scanning the whole board.
+     * White wins with five or more; under the ban-hand rules black needs
+     * exactly five (overline is not a win).
+     */
+    public boolean isFiveAt(int row, int col, int color) {
+        for (int dir = 0; dir < 4; dir++) {
+            int count = countConsecutive(row, col, dir, color);
+            if (count == 5 || (count > 5 && (color == WHITE || !banHand))) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Checks for a winner anywhere on the board.
+     * White wins with five or more; under the ban-hand rules black needs
+     * exactly five (overline is not a win).
+     * @return BLACK, WHITE or EMPTY
+     */
+    public int checkWinner() {
+        for (int dir = 0; dir < 4; dir++) {
+            for (int line = 0; line < LINE_COUNT; line++) {
+                if (fiveStarts(lines[1][dir][line]) != 0) return WHITE;
+                long b = lines[0][dir][line];
+                long five = banHand ? fiveStarts(b) & ~(b << 1) & ~(b >>> 5) : fiveStarts(b);
+                if (five != 0) return BLACK;
+            }
+        }
+        return EMPTY;
+    }
+
+    /**
+     * Bits where a run of at least five begins.
+     */
+    private static long fiveStarts(long m) {
+        return m & (m >>> 1) & (m >>> 2) & (m >>> 3) & (m >>> 4);
+    }
+}
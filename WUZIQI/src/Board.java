@@ -10,6 +10,9 @@ public class Board {
     public static final int EMPTY = 0;
     public static final int WIN_LENGTH = 5;
     
+    // Line directions: horizontal, vertical, and both diagonals
+    private static final int[][] DIRECTIONS = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+    
     private final int[][] grid = new int[BOARD_SIZE][BOARD_SIZE];
     
     /**
@@ -64,6 +67,48 @@ public class Board {
         return EMPTY;
     }
     
+    /**
+     * Checks whether the stone just placed at the given position wins.
+     * Only lines through the last move can contain a new five, so this
+     * avoids scanning the whole board after every move.
+     * @param row The row of the last move
+     * @param col The column of the last move
+     * @param exactFiveForBlack If true, a black overline (six or more) does not win
+     * @return The color of the winner, or EMPTY if the move does not win
+     */
+    public int checkWinner(int row, int col, boolean exactFiveForBlack) {
+        int color = grid[row][col];
+        if (color == EMPTY) {
+            return EMPTY;
+        }
+        for (int[] dir : DIRECTIONS) {
+            int count = 1 + countRun(row, col, dir[0], dir[1], color)
+                          + countRun(row, col, -dir[0], -dir[1], color);
+            if (count == WIN_LENGTH) {
+                return color;
+            }
+            if (count > WIN_LENGTH && (color == WHITE || !exactFiveForBlack)) {
+                return color;
+            }
+        }
+        return EMPTY;
+    }
+    
+    /**
+     * Counts same-colored stones next to a position in one direction.
+     */
+    private int countRun(int row, int col, int rowDir, int colDir, int color) {
+        int count = 0;
+        int r = row + rowDir;
+        int c = col + colDir;
+        while (r >= 0 && r < BOARD_SIZE && c >= 0 && c < BOARD_SIZE && grid[r][c] == color) {
+            count++;
+            r += rowDir;
+            c += colDir;
+        }
+        return count;
+    }
+    
     /**
      * Counts stones in a diagonal line centered at the given position.
      */
@@ -6,51 +6,37 @@ import javax.swing.JPanel;
 /**
  * Chess board panel that handles drawing and user interaction.
  * This is the main game panel where the board is displayed and clicks are processed.
+ * The game itself (moves, rules, engine replies) is a headless Game.
  */
 public class DrawChessBoard extends JPanel implements MouseListener, MouseMotionListener {
     
     // Stone color constants
-    protected static final int BLACK = -1;
-    protected static final int WHITE = 1;
-    protected static final int EMPTY = 0;
-    protected static final int DRAW = 2;
+    protected static final int BLACK = Game.BLACK;
+    protected static final int WHITE = Game.WHITE;
+    protected static final int EMPTY = Game.EMPTY;
+    protected static final int DRAW = Game.DRAW;
     
     // Board dimensions
-    protected static final int BOARD_SIZE = 15;
+    protected static final int BOARD_SIZE = Game.BOARD_SIZE;
     
-    // Ban hand (foul) settings - can be toggled
-    protected boolean banHandEnabled = true;
-    
-    // Board state
-    protected Board board = new Board();
-    protected Chessman[][] chessDisplay = new Chessman[BOARD_SIZE][BOARD_SIZE];
-    protected Stone[] moveHistory = new Stone[226];
-    protected int moveCount = 0;
-    protected int gameResult = 0;  // 0 = ongoing, -1 = black wins, 1 = white wins
-    protected int mode = 2;  // Game mode identifier
-    
-    // For replay navigation
-    private int replayOffset = 0;
+    // Game state
+    protected final Game game;
     
     // Drawing calculations
     private int cellHeight;
     private int cellWidth;
     private int boardOffsetX;
     private int boardOffsetY;
-
-    // Last move marker
-    private int lastMoveRow = -1;
-    private int lastMoveCol = -1;
     
     // Images
     protected Image boardImage;
-    protected AI ai;
-    protected volatile boolean aiThinking = false;
 
     /**
      * Constructor for starting a new game.
+     * @param game The game to show and play
      */
-    public DrawChessBoard() {
+    public DrawChessBoard(Game game) {
+        this.game = game;
         loadBoardImage();
         addMouseListener(this);
     }
@@ -60,21 +46,7 @@ public class DrawChessBoard extends JPanel implements MouseListener, MouseMotion
      * @param stones Array of stones representing the recorded game
      */
     public DrawChessBoard(Stone[] stones) {
-        loadBoardImage();
-        addMouseListener(this);
-        this.moveHistory = stones;
-        
-        // Replay all moves to reconstruct board state
-        for (int i = 1; i < stones.length; i++) {
-            if (stones[i] == null) {
-                this.moveCount = i - 1;
-                break;
-            }
-            Stone stone = stones[i];
-            chessDisplay[stone.getRow()][stone.getCol()] = new Chessman(stone.getColor(), true);
-            board.setCell(stone.getRow(), stone.getCol(), stone.getColor());
-        }
-        updateLastMoveMarker();
+        this(new Game(stones));
         setLayout(null);
     }
 
@@ -95,31 +67,33 @@ public class DrawChessBoard extends JPanel implements MouseListener, MouseMotion
      * @param k Number of moves to undo
      */
     public void undoMove(int k) {
-        if (moveCount >= k) {
-            for (int i = 0; i < k; i++) {
-                Stone stone = moveHistory[moveCount - i];
-                board.setCell(stone.getRow(), stone.getCol(), 0);
-                chessDisplay[stone.getRow()][stone.getCol()] = null;
-                moveHistory[moveCount - i] = null;
-            }
-            moveCount -= k;
-            gameResult = 0;
+        // A running search stands for the AI's reply, so cancelling it takes back one move
+        if (game.isEngineThinking()) {
+            k--;
+        }
+        if (game.undo(k)) {
             loadBoardImage();
-            updateLastMoveMarker();
             repaint();
+            // Taking back a winning move and the reply before it leaves the engine to move
+            if (!game.isOver() && game.isEngineTurn()) {
+                startAIMove();
+            }
         }
     }
 
+    /**
+     * Cancels the AI's search, if one is running, and any pondering. The
+     * cancelled search's move is dropped when it arrives. Returns at once.
+     */
+    public void cancelSearch() {
+        game.cancelEngineMove();
+    }
+
     /**
      * Navigate to previous move in replay mode.
      */
     public void goBack() {
-        if (moveCount > replayOffset) {
-            Stone stone = moveHistory[moveCount - replayOffset];
-            board.setCell(stone.getRow(), stone.getCol(), 0);
-            chessDisplay[stone.getRow()][stone.getCol()] = null;
-            replayOffset++;
-            updateLastMoveMarker();
+        if (game.stepBack()) {
             repaint();
         }
     }
@@ -128,12 +102,7 @@ public class DrawChessBoard extends JPanel implements MouseListener, MouseMotion
      * Navigate to next move in replay mode.
      */
     public void goForward() {
-        if (replayOffset > 0) {
-            Stone stone = moveHistory[moveCount - replayOffset + 1];
-            board.setCell(stone.getRow(), stone.getCol(), stone.getColor());
-            chessDisplay[stone.getRow()][stone.getCol()] = new Chessman(stone.getColor(), true);
-            replayOffset--;
-            updateLastMoveMarker();
+        if (game.stepForward()) {
             repaint();
         }
     }
@@ -143,12 +112,8 @@ public class DrawChessBoard extends JPanel implements MouseListener, MouseMotion
      * @param stone The stone to restore
      */
     public void restoreMove(Stone stone) {
-        moveCount++;
-        chessDisplay[stone.getRow()][stone.getCol()] = new Chessman(stone.getColor(), true);
-        board.setCell(stone.getRow(), stone.getCol(), stone.getColor());
-        moveHistory[moveCount] = stone;
-        setLastMove(stone.getRow(), stone.getCol());
-        checkGameEnd();
+        game.restore(stone);
+        showResult();
         repaint();
     }
 
@@ -161,27 +126,22 @@ public class DrawChessBoard extends JPanel implements MouseListener, MouseMotion
     public void placeStone(int row, int col) {
         // To be overridden by subclasses
     }
-    
+
     /**
-     * Checks if a move is a foul (ban hand) for black.
-     * @param row The row position
-     * @param col The column position
-     * @return true if the move is forbidden
+     * Plays the side to move's stone, unless it is a foul for black, and lets
+     * the engine reply if it plays the other side.
      */
-    protected boolean isFoulMove(int row, int col) {
-        if (!banHandEnabled) {
-            return false;
+    protected void playStone(int row, int col) {
+        if (game.getSideToMove() == BLACK && game.isFoulMove(row, col)) {
+            showFoulWarning("This move violates ban hand rules (禁手)");
+            return; // Don't place the stone
         }
-        
-        // Get board state as 2D array
-        int[][] boardState = new int[BOARD_SIZE][BOARD_SIZE];
-        for (int i = 0; i < BOARD_SIZE; i++) {
-            for (int j = 0; j < BOARD_SIZE; j++) {
-                boardState[i][j] = board.getCell(i, j);
-            }
+        game.play(row, col);
+        showResult();
+        repaint();
+        if (!game.isOver() && game.isEngineTurn()) {
+            startAIMove();
         }
-        
-        return AI.isFoulMove(row, col, boardState);
     }
     
     /**
@@ -198,90 +158,76 @@ public class DrawChessBoard extends JPanel implements MouseListener, MouseMotion
      * Enables or disables ban hand rules.
      */
     public void setBanHandEnabled(boolean enabled) {
-        this.banHandEnabled = enabled;
+        game.setBanHandEnabled(enabled);
     }
 
     /**
-     * Checks for a winner and updates the game state.
+     * Shows the winner or draw image once the game has ended.
      */
-    protected void checkGameEnd() {
-        gameResult = board.checkWinner();
-        if (gameResult == BLACK) {
+    protected void showResult() {
+        int result = game.getResult();
+        if (result == BLACK) {
             boardImage = Toolkit.getDefaultToolkit().getImage(
                 DrawChessBoard.class.getResource("/Blackwin.jpg")
             );
-        } else if (gameResult == WHITE) {
+        } else if (result == WHITE) {
             boardImage = Toolkit.getDefaultToolkit().getImage(
                 DrawChessBoard.class.getResource("/Whitewin.jpg")
             );
-        } else if (moveCount >= BOARD_SIZE * BOARD_SIZE) {
-            gameResult = DRAW;
+        } else if (result == DRAW) {
             boardImage = Toolkit.getDefaultToolkit().getImage(
                 DrawChessBoard.class.getResource("/Draw.jpg")
             );
         }
     }
 
-    /**
-     * Makes the AI play a move.
-     * @param color The AI's stone color
-     */
-    protected void makeAIMove(int color) {
-        int[][] boardState = new int[BOARD_SIZE][BOARD_SIZE];
-        for (int i = 0; i < BOARD_SIZE; i++) {
-            for (int j = 0; j < BOARD_SIZE; j++) {
-                boardState[i][j] = board.getCell(i, j);
-            }
-        }
-        
-        ai = new AI(boardState, color);
-        int[] result = ai.getResult();
-        
-        int aiColor = -color;
-        chessDisplay[result[0]][result[1]] = new Chessman(aiColor, true);
-        board.setCell(result[0], result[1], aiColor);
-        moveHistory[moveCount] = new Stone(aiColor, result[0], result[1]);
-        setLastMove(result[0], result[1]);
-    }
-
     /**
      * Runs the AI move computation off the UI thread and applies the result on the EDT.
-     * @param color The AI's stone color (same convention as makeAIMove)
      */
-    protected void startAIMove(int color) {
-        if (aiThinking) {
+    protected void startAIMove() {
+        if (game.isEngineThinking()) {
             return;
         }
-        aiThinking = true;
-        int[][] boardState = new int[BOARD_SIZE][BOARD_SIZE];
-        for (int i = 0; i < BOARD_SIZE; i++) {
-            for (int j = 0; j < BOARD_SIZE; j++) {
-                boardState[i][j] = board.getCell(i, j);
-            }
-        }
+        SearchEvents.AIMove event = new SearchEvents.AIMove();
+        event.begin();
+        event.color = game.getEngineColor();
+        event.row = -1;
+        event.col = -1;
+        Game.EngineMove move = game.prepareEngineMove();
 
         javax.swing.SwingWorker<int[], Void> worker = new javax.swing.SwingWorker<int[], Void>() {
+            // Search end (System.nanoTime), for the EDT wait of the AI move event
+            private volatile long searchEnd;
+
             @Override
             protected int[] doInBackground() {
-                ai = new AI(boardState, color);
-                return ai.getResult();
+                try {
+                    return move.call();
+                } finally {
+                    searchEnd = System.nanoTime();
+                }
             }
 
             @Override
             protected void done() {
+                event.edtWait = System.nanoTime() - searchEnd;
+                event.sessionWait = move.getSessionWaitNs();
+                event.searchTime = move.getSearchNs();
                 try {
                     int[] result = get();
-                    int aiColor = -color;
-                    chessDisplay[result[0]][result[1]] = new Chessman(aiColor, true);
-                    board.setCell(result[0], result[1], aiColor);
-                    moveHistory[moveCount] = new Stone(aiColor, result[0], result[1]);
-                    setLastMove(result[0], result[1]);
-                    checkGameEnd();
-                    repaint();
+                    // Dropped if cancelled by an undo or by leaving the game
+                    if (game.applyEngineMove(move, result)) {
+                        event.row = result[0];
+                        event.col = result[1];
+                        event.applied = true;
+                        showResult();
+                        repaint();
+                    }
                 } catch (Exception e) {
-                    // Ignore AI failures; keep UI responsive
+                    // Ignore AI failures; keep UI responsive. A stale move leaves a newer one alone
+                    game.failEngineMove(move);
                 } finally {
-                    aiThinking = false;
+                    event.commit();
                 }
             }
         };
@@ -294,7 +240,7 @@ public class DrawChessBoard extends JPanel implements MouseListener, MouseMotion
      * @return The stone at that move
      */
     public Stone getStone(int moveNumber) {
-        return moveHistory[moveNumber];
+        return game.getStone(moveNumber);
     }
 
     /**
@@ -302,7 +248,7 @@ public class DrawChessBoard extends JPanel implements MouseListener, MouseMotion
      * @return The move count
      */
     public int getMoveCount() {
-        return moveCount;
+        return game.getMoveCount();
     }
 
     @Override
@@ -352,14 +298,15 @@ public class DrawChessBoard extends JPanel implements MouseListener, MouseMotion
         
         for (int i = 0; i < BOARD_SIZE; i++) {
             for (int j = 0; j < BOARD_SIZE; j++) {
-                if (chessDisplay[i][j] != null && chessDisplay[i][j].getPlaced()) {
+                int color = game.getCell(i, j);
+                if (color != EMPTY) {
                     int posX = boardOffsetX + i * cellWidth;
                     int posY = boardOffsetY + j * cellHeight;
                     
                     float[] fractions = new float[]{0f, 1f};
                     RadialGradientPaint paint;
                     
-                    if (chessDisplay[i][j].getColor() == WHITE) {
+                    if (color == WHITE) {
                         // White stone with gradient
                         Color[] colors = new Color[]{Color.WHITE, Color.YELLOW};
                         paint = new RadialGradientPaint(posX, posY, 50, fractions, colors);
@@ -381,9 +328,10 @@ public class DrawChessBoard extends JPanel implements MouseListener, MouseMotion
             }
         }
 
-        if (lastMoveRow >= 0 && lastMoveCol >= 0) {
-            int posX = boardOffsetX + lastMoveRow * cellWidth;
-            int posY = boardOffsetY + lastMoveCol * cellHeight;
+        int[] lastMove = game.getLastMove();
+        if (lastMove != null) {
+            int posX = boardOffsetX + lastMove[0] * cellWidth;
+            int posY = boardOffsetY + lastMove[1] * cellHeight;
             int markSize = 6;
             g2d.setColor(Color.RED);
             g2d.fillOval(posX - markSize / 2, posY - markSize / 2, markSize, markSize);
@@ -392,7 +340,7 @@ public class DrawChessBoard extends JPanel implements MouseListener, MouseMotion
 
     @Override
     public void mouseClicked(MouseEvent e) {
-        if (gameResult != 0 || aiThinking) return; // Game ended or AI thinking
+        if (game.isOver() || game.isEngineThinking()) return; // Game ended or AI thinking
         
         int clickX = e.getX();
         int clickY = e.getY();
@@ -413,7 +361,7 @@ public class DrawChessBoard extends JPanel implements MouseListener, MouseMotion
         int maxDist = Math.min(cellWidth, cellHeight) / 2;
         if (dx * dx + dy * dy > maxDist * maxDist) return;
 
-        if (board.getCell(row, col) == 0) {
+        if (game.getCell(row, col) == EMPTY) {
             placeStone(row, col);
         }
     }
@@ -435,19 +383,4 @@ public class DrawChessBoard extends JPanel implements MouseListener, MouseMotion
 
     @Override
     public void mouseMoved(MouseEvent e) {}
-
-    protected void setLastMove(int row, int col) {
-        lastMoveRow = row;
-        lastMoveCol = col;
-    }
-
-    private void updateLastMoveMarker() {
-        int index = moveCount - replayOffset;
-        if (index >= 1 && moveHistory[index] != null) {
-            setLastMove(moveHistory[index].getRow(), moveHistory[index].getCol());
-        } else {
-            lastMoveRow = -1;
-            lastMoveCol = -1;
-        }
-    }
 }
@@ -0,0 +1,233 @@
+/**
+ * Long-lived engine attached to one game.
+ *
+ * Creating an AI per move copies the board, recomputes the Zobrist key,
+ * rebuilds every cached line score and starts from an empty transposition
+ * table. A session keeps a single AI for the whole game instead and feeds
+ * it moves and undos incrementally, so the table, the history heuristic
+ * and the evaluation caches carry over from one move to the next.
+ *
+ * Pondering: after the engine's move, startPondering guesses the
+ * opponent's reply, plays it on the engine's board and searches the
+ * resulting position on a background thread. opponentMoved tells the
+ * session what was really played without blocking: on a hit the ponder
+ * search becomes the real search and keeps its progress, on a miss it is
+ * stopped and the next search starts from the filled table.
+ *
+ * Apart from opponentMoved, a session is not thread-safe: moves, undos
+ * and syncs must not overlap with a running search, and stopPondering
+ * must be called before them once pondering has started.
+ */
+public class EngineSession {
+
+    private static final int BOARD_SIZE = AI.BOARD_SIZE;
+
+    private final AI engine;
+
+    // Ponder state: the guessed reply (a cell index) on the engine's board, the
+    // thread searching after it, and the result kept after a hit
+    private Thread ponderThread;
+    private volatile int[] ponderResult;
+    private volatile boolean ponderHit;
+    private int ponderMove = -1;
+    private int[] pendingResult;
+
+    /**
+     * Creates a session for a game against the given player.
+     * @param playerColor The human player's colour; the engine plays the other one
+     */
+    public EngineSession(int playerColor) {
+        this.engine = new AI(new int[BOARD_SIZE][BOARD_SIZE], playerColor);
+    }
+
+    /**
+     * Gets the human player's colour.
+     */
+    public int getPlayerColor() {
+        return engine.getPlayerColor();
+    }
+
+    /**
+     * Records a move played on the game board.
+     */
+    public void play(int row, int col, int color) {
+        pendingResult = null;
+        engine.placeStone(row, col, color);
+    }
+
+    /**
+     * Records a move taken back on the game board.
+     */
+    public void undo(int row, int col) {
+        pendingResult = null;
+        engine.removeStone(row, col);
+    }
+
+    /**
+     * Sets whether black plays by the ban-hand rules (the default) or
+     * freestyle, where it has no fouls and an overline wins.
+     */
+    public void setBanHand(boolean enabled) {
+        if (engine.isBanHand() != enabled) {
+            pendingResult = null;
+            engine.setBanHand(enabled);
+        }
+    }
+
+    /**
+     * Brings the engine's board in line with boardState, applying only the
+     * differences. Catches up after loads, replays or moves made while the
+     * engine was busy; normally there is nothing to do.
+     * @return The number of cells that changed
+     */
+    public int sync(int[][] boardState) {
+        int changes = 0;
+        // Removals first, so a cell that changed colour is emptied before it is refilled
+        for (int row = 0; row < BOARD_SIZE; row++) {
+            for (int col = 0; col < BOARD_SIZE; col++) {
+                int stone = engine.getStone(row, col);
+                if (stone != AI.EMPTY && stone != boardState[row][col]) {
+                    engine.removeStone(row, col);
+                    changes++;
+                }
+            }
+        }
+        for (int row = 0; row < BOARD_SIZE; row++) {
+            for (int col = 0; col < BOARD_SIZE; col++) {
+                int cell = boardState[row][col];
+                if (cell != AI.EMPTY && engine.getStone(row, col) == AI.EMPTY) {
+                    engine.placeStone(row, col, cell);
+                    changes++;
+                }
+            }
+        }
+        if (changes > 0) {
+            pendingResult = null;
+        }
+        return changes;
+    }
+
+    /**
+     * Searches the current position for the engine's move. After a ponder
+     * hit this returns the ponder search's move without searching again.
+     * The move is not recorded; call play once it is on the game board.
+     * @return {row, col}
+     */
+    public int[] getResult() {
+        stopPondering();
+        if (pendingResult != null) {
+            int[] result = pendingResult;
+            pendingResult = null;
+            return result;
+        }
+        return engine.getResult();
+    }
+
+    /**
+     * Searches like getResult under the control of a handle. Cancelling the
+     * handle also stops a ponder search that is still being waited for.
+     * @param handle A handle not used by another search
+     * @return {row, col}
+     */
+    public int[] getResult(SearchHandle handle) {
+        handle.attach(engine);
+        stopPondering();
+        if (pendingResult != null) {
+            int[] result = pendingResult;
+            pendingResult = null;
+            handle.finish(result);
+            return result;
+        }
+        return engine.getResult(handle);
+    }
+
+    // ==================== PONDERING ====================
+
+    /**
+     * Starts searching on the opponent's time, if pondering is enabled.
+     * Call after the engine's own move has been recorded with play.
+     */
+    public void startPondering() {
+        if (!AI.isPonderEnabled() || ponderThread != null) {
+            return;
+        }
+        int move = engine.predictReply();
+        if (move < 0) {
+            return;
+        }
+        engine.placeStone(move / BOARD_SIZE, move % BOARD_SIZE, getPlayerColor());
+        ponderMove = move;
+        ponderHit = false;
+        ponderResult = null;
+        engine.preparePonder();
+        ponderThread = new Thread(() -> ponderResult = engine.getResult(), "AI-ponder");
+        ponderThread.setDaemon(true);
+        ponderThread.start();
+    }
+
+    /**
+     * Tells a pondering session which move the opponent played. Returns at
+     * once; safe to call from the event dispatch thread while pondering.
+     */
+    public void opponentMoved(int row, int col) {
+        if (ponderThread == null || ponderHit) {
+            return;
+        }
+        if (row * BOARD_SIZE + col == ponderMove) {
+            ponderHit = true;
+            engine.ponderHit();
+        } else {
+            engine.stop();
+        }
+    }
+
+    /**
+     * Stops a ponder search that has not been hit, e.g. after an undo.
+     * Returns at once; the guessed reply is taken back by stopPondering.
+     */
+    public void cancelPondering() {
+        if (ponderThread != null && !ponderHit) {
+            engine.stop();
+        }
+    }
+
+    /**
+     * Gets whether a ponder search has been started and not yet collected.
+     */
+    public boolean isPondering() {
+        return ponderThread != null;
+    }
+
+    /**
+     * Ends pondering and waits for the ponder thread. After a hit its move is
+     * kept for the next getResult; otherwise the guessed reply is taken back.
+     */
+    public void stopPondering() {
+        Thread thread = ponderThread;
+        if (thread == null) {
+            return;
+        }
+        if (!ponderHit) {
+            engine.stop();
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        ponderThread = null;
+        if (ponderHit) {
+            pendingResult = ponderResult;
+        } else {
+            engine.removeStone(ponderMove / BOARD_SIZE, ponderMove % BOARD_SIZE);
+        }
+        ponderMove = -1;
+    }
+
+    /**
+     * Gets the engine, e.g. to read search statistics.
+     */
+    public AI getEngine() {
+        return engine;
+    }
+}
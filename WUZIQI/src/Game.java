@@ -0,0 +1,520 @@
+import java.util.concurrent.Callable;
+
+/**
+ * One game of Gobang without any user interface: move history, turn order,
+ * ban-hand rules for black, win and draw detection, undo, replay
+ * navigation, and the engine's replies when one side is played by the AI.
+ *
+ * The game window (DrawChessBoard and its modes) draws a Game and forwards
+ * clicks to it; servers and tools can use it directly without loading AWT
+ * or Swing.
+ *
+ * A game is not thread-safe. Call it from one thread (the event dispatch
+ * thread in the window), except for the EngineMove returned by
+ * prepareEngineMove, whose search may run on any thread.
+ *
+ * Every change to the engine session (moves, syncs, searches, starting and
+ * stopping pondering) is made while holding the session's lock, so a
+ * cancelled search still finishing on a worker thread never overlaps with
+ * the next one. Only EngineSession.opponentMoved and cancelPondering, which
+ * are safe to call from any thread and return at once, go without it.
+ */
+public class Game {
+
+    public static final int BOARD_SIZE = Board.BOARD_SIZE;
+    public static final int BLACK = Board.BLACK;
+    public static final int WHITE = Board.WHITE;
+    public static final int EMPTY = Board.EMPTY;
+    public static final int DRAW = 2;
+
+    private static final int MAX_MOVES = BOARD_SIZE * BOARD_SIZE;
+
+    private final Board board = new Board();
+    // Moves in order, 1-indexed
+    private final Stone[] moveHistory = new Stone[MAX_MOVES + 1];
+    private int moveCount = 0;
+    private int result = EMPTY;  // EMPTY while playing, BLACK or WHITE for the winner, or DRAW
+    private boolean banHandEnabled = true;
+
+    // Colour played by the engine (EMPTY for two players), its session, and
+    // the engine move the game is waiting for
+    private final int engineColor;
+    private EngineSession engine;
+    private EngineMove pendingMove;
+
+    // Moves stepped back from the end while replaying
+    private int replayOffset = 0;
+
+    /**
+     * Creates a game between two players.
+     */
+    public Game() {
+        this(EMPTY);
+    }
+
+    /**
+     * Creates a game against the engine. When the engine plays black it
+     * opens in the centre at once.
+     * @param engineColor The engine's colour, or EMPTY for two players
+     */
+    public Game(int engineColor) {
+        this(engineColor, new Stone[0]);
+        if (engineColor == BLACK) {
+            place(BOARD_SIZE / 2, BOARD_SIZE / 2, BLACK);
+        }
+    }
+
+    /**
+     * Creates a two-player game from a recorded game, e.g. for replay.
+     * @param stones Moves from index 1, up to the first null
+     */
+    public Game(Stone[] stones) {
+        this(EMPTY, stones);
+    }
+
+    /**
+     * Creates a game against the engine from a recorded position, e.g. one
+     * set up by a tournament manager. The engine does not open by itself;
+     * whoever is to move after the stones moves next.
+     * @param engineColor The engine's colour, or EMPTY for two players
+     * @param stones Moves from index 1, up to the first null
+     */
+    public Game(int engineColor, Stone[] stones) {
+        if (engineColor != EMPTY && engineColor != BLACK && engineColor != WHITE) {
+            throw new IllegalArgumentException("engineColor must be BLACK, WHITE or EMPTY");
+        }
+        this.engineColor = engineColor;
+        for (int i = 1; i < stones.length && stones[i] != null; i++) {
+            restore(stones[i]);
+        }
+    }
+
+    // ==================== STATE ====================
+
+    public int getEngineColor() {
+        return engineColor;
+    }
+
+    /**
+     * Gets the stone on a cell as currently shown (see stepBack).
+     * @return BLACK, WHITE or EMPTY
+     */
+    public int getCell(int row, int col) {
+        return board.getCell(row, col);
+    }
+
+    /**
+     * Copies the board as currently shown into a 2D array.
+     */
+    public int[][] getBoardState() {
+        int[][] boardState = new int[BOARD_SIZE][BOARD_SIZE];
+        for (int i = 0; i < BOARD_SIZE; i++) {
+            for (int j = 0; j < BOARD_SIZE; j++) {
+                boardState[i][j] = board.getCell(i, j);
+            }
+        }
+        return boardState;
+    }
+
+    /**
+     * Gets the total number of moves played.
+     */
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    /**
+     * Gets a stone from the move history.
+     * @param moveNumber The move number (1-indexed)
+     */
+    public Stone getStone(int moveNumber) {
+        return moveHistory[moveNumber];
+    }
+
+    /**
+     * Gets the colour to move: black on odd move numbers, white on even ones.
+     */
+    public int getSideToMove() {
+        return moveCount % 2 == 0 ? BLACK : WHITE;
+    }
+
+    /**
+     * Gets the last move shown (see stepBack) as {row, col}, or null before the first move.
+     */
+    public int[] getLastMove() {
+        int index = moveCount - replayOffset;
+        if (index < 1 || moveHistory[index] == null) {
+            return null;
+        }
+        return new int[]{moveHistory[index].getRow(), moveHistory[index].getCol()};
+    }
+
+    /**
+     * Gets the outcome so far.
+     * @return EMPTY while the game goes on, BLACK or WHITE for the winner, or DRAW
+     */
+    public int getResult() {
+        return result;
+    }
+
+    public boolean isOver() {
+        return result != EMPTY;
+    }
+
+    public boolean isBanHandEnabled() {
+        return banHandEnabled;
+    }
+
+    /**
+     * Enables or disables the ban-hand rules for black. The engine takes
+     * them over at its next search.
+     */
+    public void setBanHandEnabled(boolean enabled) {
+        this.banHandEnabled = enabled;
+    }
+
+    // ==================== MOVES ====================
+
+    /**
+     * Checks if a black move is forbidden by the ban-hand rules.
+     */
+    public boolean isFoulMove(int row, int col) {
+        return banHandEnabled && AI.isFoulMove(row, col, getBoardState());
+    }
+
+    /**
+     * Gets whether the side to move is played by the engine.
+     */
+    public boolean isEngineTurn() {
+        return engineColor != EMPTY && getSideToMove() == engineColor;
+    }
+
+    /**
+     * Plays a move for the side to move.
+     * @throws IllegalStateException If the game is over, it is the engine's turn, or a replay is stepped back
+     * @throws IllegalArgumentException If the cell is off the board, taken, or a foul for black
+     */
+    public void play(int row, int col) {
+        if (result != EMPTY) {
+            throw new IllegalStateException("the game is over");
+        }
+        if (isEngineTurn() || pendingMove != null) {
+            throw new IllegalStateException("it is the engine's turn");
+        }
+        if (replayOffset > 0) {
+            throw new IllegalStateException("the replay is not at the last move");
+        }
+        checkEmpty(row, col);
+        int color = getSideToMove();
+        if (color == BLACK && isFoulMove(row, col)) {
+            throw new IllegalArgumentException("cell " + row + "," + col + " is a foul for black");
+        }
+        place(row, col, color);
+        if (engine != null && result == EMPTY) {
+            // Does not block: a ponder hit keeps searching, a miss is stopped
+            engine.opponentMoved(row, col);
+        }
+    }
+
+    /**
+     * Replays a recorded move, e.g. from a saved game, without turn or foul
+     * checks. A move that is already on the board in the same colour, like
+     * the engine's opening stone of a new game, is skipped.
+     */
+    public void restore(Stone stone) {
+        int row = stone.getRow();
+        int col = stone.getCol();
+        if (BitBoard.isValid(row, col) && board.getCell(row, col) == stone.getColor()) {
+            return;
+        }
+        checkEmpty(row, col);
+        place(row, col, stone.getColor());
+    }
+
+    /**
+     * Takes back the last k moves, or nothing if there are fewer. A pending
+     * engine move is cancelled first and does not count as a move.
+     * @return Whether the moves were taken back
+     */
+    public boolean undo(int k) {
+        cancelEngineMove();
+        if (moveCount < k) {
+            return false;
+        }
+        stepForwardToEnd();
+        for (int i = 0; i < k; i++) {
+            Stone stone = moveHistory[moveCount];
+            board.setCell(stone.getRow(), stone.getCol(), EMPTY);
+            moveHistory[moveCount] = null;
+            moveCount--;
+        }
+        // The engine catches up with the board at its next search
+        result = EMPTY;
+        return true;
+    }
+
+    private void checkEmpty(int row, int col) {
+        if (!BitBoard.isValid(row, col) || board.getCell(row, col) != EMPTY) {
+            throw new IllegalArgumentException("cell " + row + "," + col + " is not empty");
+        }
+    }
+
+    private void place(int row, int col, int color) {
+        board.setCell(row, col, color);
+        moveHistory[++moveCount] = new Stone(color, row, col);
+        checkGameEnd(row, col);
+    }
+
+    /**
+     * Checks whether the last move won or filled the board.
+     */
+    private void checkGameEnd(int row, int col) {
+        result = board.checkWinner(row, col, banHandEnabled);
+        if (result == EMPTY && moveCount >= MAX_MOVES) {
+            result = DRAW;
+        }
+    }
+
+    // ==================== REPLAY ====================
+
+    /**
+     * Takes the last shown move off the board without forgetting it.
+     * @return Whether there was a move to step back
+     */
+    public boolean stepBack() {
+        if (moveCount <= replayOffset) {
+            return false;
+        }
+        Stone stone = moveHistory[moveCount - replayOffset];
+        board.setCell(stone.getRow(), stone.getCol(), EMPTY);
+        replayOffset++;
+        return true;
+    }
+
+    /**
+     * Puts back the next move taken off with stepBack.
+     * @return Whether there was a move to step forward
+     */
+    public boolean stepForward() {
+        if (replayOffset == 0) {
+            return false;
+        }
+        Stone stone = moveHistory[moveCount - replayOffset + 1];
+        board.setCell(stone.getRow(), stone.getCol(), stone.getColor());
+        replayOffset--;
+        return true;
+    }
+
+    private void stepForwardToEnd() {
+        while (stepForward()) {
+            // Puts every stepped-back move back
+        }
+    }
+
+    // ==================== ENGINE ====================
+
+    /**
+     * Gets the engine session, creating it on first use.
+     */
+    public EngineSession getEngine() {
+        if (engineColor == EMPTY) {
+            throw new IllegalStateException("no side is played by the engine");
+        }
+        if (engine == null) {
+            engine = new EngineSession(-engineColor);
+        }
+        return engine;
+    }
+
+    /**
+     * Gets whether an engine move has been prepared and not yet applied or cancelled.
+     */
+    public boolean isEngineThinking() {
+        return pendingMove != null;
+    }
+
+    /**
+     * Prepares the engine's reply to the current position. Run the returned
+     * move's search on any thread, then hand its result to applyEngineMove
+     * on the game's thread.
+     * @throws IllegalStateException If it is not the engine's turn or a move is already pending
+     */
+    public EngineMove prepareEngineMove() {
+        return prepareEngineMove(new SearchHandle());
+    }
+
+    /**
+     * Prepares the engine's reply like prepareEngineMove, searching under
+     * the control of the given handle (e.g. its own time limit and deadline).
+     * @param handle A handle not used by another search
+     */
+    public EngineMove prepareEngineMove(SearchHandle handle) {
+        if (!isEngineTurn() || result != EMPTY) {
+            throw new IllegalStateException("it is not the engine's turn");
+        }
+        if (pendingMove != null) {
+            throw new IllegalStateException("an engine move is already pending");
+        }
+        stepForwardToEnd();
+        pendingMove = new EngineMove(getEngine(), getBoardState(), banHandEnabled, openingReply(), handle);
+        return pendingMove;
+    }
+
+    /**
+     * Plays the result of a prepared engine move and starts pondering.
+     * @return False if the move was cancelled in the meantime and has been dropped
+     */
+    public boolean applyEngineMove(EngineMove move, int[] result) {
+        if (move != pendingMove) {
+            return false;
+        }
+        pendingMove = null;
+        place(result[0], result[1], engineColor);
+        // Same lock as EngineMove.call; free by now, as this move's search has returned
+        synchronized (engine) {
+            engine.play(result[0], result[1], engineColor);
+            if (this.result == EMPTY) {
+                engine.startPondering();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Searches and plays the engine's reply on the calling thread.
+     * @return The move as {row, col}
+     */
+    public int[] playEngineMove() {
+        return playEngineMove(new SearchHandle());
+    }
+
+    /**
+     * Searches and plays the engine's reply on the calling thread under the
+     * control of the given handle.
+     * @param handle A handle not used by another search
+     * @return The move as {row, col}
+     */
+    public int[] playEngineMove(SearchHandle handle) {
+        EngineMove move = prepareEngineMove(handle);
+        int[] result = move.call();
+        applyEngineMove(move, result);
+        return result;
+    }
+
+    /**
+     * Drops a prepared engine move whose search failed, so the game no
+     * longer waits for it. Does nothing if the move has already been
+     * cancelled, e.g. by an undo, and a newer one may be pending.
+     */
+    public void failEngineMove(EngineMove move) {
+        if (move == pendingMove) {
+            cancelEngineMove();
+        }
+    }
+
+    /**
+     * Cancels the pending engine move, if any, and any pondering. Returns at
+     * once; the cancelled search's result is dropped by applyEngineMove.
+     */
+    public void cancelEngineMove() {
+        if (pendingMove != null) {
+            pendingMove.handle.cancel();
+            pendingMove = null;
+        }
+        if (engine != null) {
+            engine.cancelPondering();
+        }
+    }
+
+    /**
+     * Gets the engine's answer to a single black stone: a neighbouring point
+     * towards the centre, played without searching.
+     * @return {row, col}, or null if the position is not the first move
+     */
+    private int[] openingReply() {
+        if (moveCount != 1 || engineColor != WHITE) {
+            return null;
+        }
+        int row = moveHistory[1].getRow();
+        int col = moveHistory[1].getCol();
+        int[] rowOffsets = {1, 1, -1, -1, 0, 0, 1, -1};
+        int[] colOffsets = {1, -1, -1, 1, 1, -1, 0, 0};
+        for (int i = 0; i < rowOffsets.length; i++) {
+            int newRow = row + rowOffsets[i];
+            int newCol = col + colOffsets[i];
+            // Prefer positions closer to center
+            if (Math.abs(newRow - 7) <= Math.abs(row - 7) &&
+                Math.abs(newCol - 7) <= Math.abs(col - 7)) {
+                return new int[]{newRow, newCol};
+            }
+        }
+        return new int[]{8, 8};
+    }
+
+    /**
+     * An engine reply being computed: the position it was asked for and the
+     * handle of its search. call runs the search and may be used on any thread.
+     */
+    public static class EngineMove implements Callable<int[]> {
+
+        private final EngineSession session;
+        private final int[][] boardState;
+        private final boolean banHand;
+        private final int[] fixedReply;
+        private final SearchHandle handle;
+
+        // Time waiting for the session (e.g. for a cancelled search still
+        // finishing) and searching, in nanoseconds
+        private volatile long sessionWaitNs;
+        private volatile long searchNs;
+
+        private EngineMove(EngineSession session, int[][] boardState, boolean banHand, int[] fixedReply,
+                           SearchHandle handle) {
+            this.session = session;
+            this.boardState = boardState;
+            this.banHand = banHand;
+            this.fixedReply = fixedReply;
+            this.handle = handle;
+        }
+
+        /**
+         * Searches the position and returns the engine's move as {row, col}.
+         */
+        @Override
+        public int[] call() {
+            if (fixedReply != null) {
+                handle.finish(fixedReply);
+                return fixedReply;
+            }
+            long waitStart = System.nanoTime();
+            // A cancelled move may still be finishing; the session takes one at a time
+            synchronized (session) {
+                long searchStart = System.nanoTime();
+                sessionWaitNs = searchStart - waitStart;
+                try {
+                    session.stopPondering();
+                    session.setBanHand(banHand);
+                    session.sync(boardState);
+                    return session.getResult(handle);
+                } finally {
+                    searchNs = System.nanoTime() - searchStart;
+                }
+            }
+        }
+
+        /**
+         * Gets the handle of the search, e.g. to watch its progress.
+         */
+        public SearchHandle getHandle() {
+            return handle;
+        }
+
+        public long getSessionWaitNs() {
+            return sessionWaitNs;
+        }
+
+        public long getSearchNs() {
+            return searchNs;
+        }
+    }
+}
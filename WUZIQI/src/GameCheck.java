@@ -0,0 +1,84 @@
+/**
+ * Headless check of the game flow around undo.
+ * For either engine colour, the player wins, the win and the engine's
+ * reply before it are taken back (the board's Undo button), and the game
+ * must then be the engine's turn, take its reply, and let the player move
+ * again.
+ *
+ * Usage: java -cp bin GameCheck
+ * Exits with 1 on the first failure.
+ */
+public class GameCheck {
+
+    private static final int BLACK = Game.BLACK;
+    private static final int WHITE = Game.WHITE;
+
+    // Player's open four on row 7, engine stones out of the way on row 0;
+    // black moves first, so the player (the side with the four) moves next
+    private static final int[][] BLACK_WINS = {{7, 3}, {0, 0}, {7, 4}, {0, 2}, {7, 5}, {0, 4}, {7, 6}, {0, 6}};
+    private static final int[][] WHITE_WINS = {{0, 0}, {7, 3}, {0, 2}, {7, 4}, {0, 4}, {7, 5}, {0, 6}, {7, 6}, {0, 8}};
+
+    public static void main(String[] args) {
+        AI.setDifficulty(0);
+        AI.setPonderEnabled(false);
+        checkUndoAfterWin(WHITE, BLACK_WINS);
+        checkUndoAfterWin(BLACK, WHITE_WINS);
+        System.out.println("Undo after a win hands the move back to the engine for both colours");
+        System.exit(0);
+    }
+
+    private static void checkUndoAfterWin(int engineColor, int[][] moves) {
+        String name = engineColor == WHITE ? "engine white" : "engine black";
+        Game game = new Game(engineColor, toStones(moves));
+        int player = -engineColor;
+        check(name, "player to move", game.getSideToMove() == player && !game.isEngineTurn());
+
+        game.play(7, 7);
+        check(name, "player wins", game.getResult() == player);
+
+        check(name, "undo succeeds", game.undo(2));
+        check(name, "game open again", !game.isOver());
+        check(name, "engine to move", game.isEngineTurn());
+
+        int count = game.getMoveCount();
+        game.playEngineMove();
+        check(name, "engine replied", game.getMoveCount() == count + 1 && !game.isEngineTurn());
+        if (!game.isOver()) {
+            int[] free = freeCell(game);
+            game.play(free[0], free[1]);
+            check(name, "player moved", game.getMoveCount() == count + 2);
+        }
+    }
+
+    private static Stone[] toStones(int[][] moves) {
+        Stone[] stones = new Stone[moves.length + 1];
+        int color = BLACK;
+        for (int i = 0; i < moves.length; i++) {
+            stones[i + 1] = new Stone(color, moves[i][0], moves[i][1]);
+            color = -color;
+        }
+        return stones;
+    }
+
+    /**
+     * Finds an empty cell the player may take, away from the foul-prone middle.
+     */
+    private static int[] freeCell(Game game) {
+        for (int row = Game.BOARD_SIZE - 1; row >= 0; row--) {
+            for (int col = 0; col < Game.BOARD_SIZE; col++) {
+                if (game.getCell(row, col) == Game.EMPTY
+                        && (game.getSideToMove() != BLACK || !game.isFoulMove(row, col))) {
+                    return new int[]{row, col};
+                }
+            }
+        }
+        throw new IllegalStateException("board is full");
+    }
+
+    private static void check(String name, String what, boolean ok) {
+        if (!ok) {
+            System.out.println("FAILED " + name + ": " + what);
+            System.exit(1);
+        }
+    }
+}
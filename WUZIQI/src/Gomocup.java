@@ -0,0 +1,404 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Gomocup (Piskvork) protocol front-end, so the engine can play under
+ * tournament managers and in batch pipelines without the game window.
+ *
+ * Commands are read from stdin and answered on stdout: START, BEGIN, TURN,
+ * BOARD ... DONE, INFO, END, plus ABOUT, RESTART and TAKEBACK. Coordinates
+ * are x,y from 0; x is the board's row index. The engine only supports a
+ * 15x15 board. Its own log lines go to stderr, as stdout carries only the
+ * protocol.
+ *
+ * Time and memory: each move gets a share of the match time left (see
+ * moveTimeLimit) as the search's time limit and stops at a deadline safely
+ * inside both timeout_turn and time_left. max_memory sizes the
+ * transposition table; the JVM heap itself is set by the launcher (-Xmx).
+ * Pondering is off, so the engine only thinks during its own turn.
+ *
+ * Rules: INFO rule 4 (renju) enables the ban-hand rules for black, for the
+ * game and the engine's search alike; rule 0 plays freestyle, where black
+ * has no fouls and wins with an overline. Every other rule (exactly five,
+ * continuous games, caro and so on, alone or with renju, except exactly
+ * five with renju, which already requires it of black) is rejected with
+ * ERROR and the previous rule stays.
+ *
+ * Usage: java -cp bin Gomocup [difficulty 0-2, default 2] [threads, default 1]
+ */
+public class Gomocup {
+
+    private static final int DEFAULT_DIFFICULTY = 2;
+    // INFO rule bits: exactly five for both sides, renju
+    private static final int RULE_EXACT_FIVE = 1;
+    private static final int RULE_RENJU = 4;
+    // Time kept back from every limit for reading, writing and stopping the search (ms)
+    private static final long RESPONSE_MARGIN_MS = 50;
+    // Moves the time left is expected to last
+    private static final int MOVES_TO_GO = 25;
+    // Share of max_memory given to the transposition table (%)
+    private static final int HASH_MEMORY_PCT = 50;
+    // Time limit of the search that warms up the engine after START (ms)
+    private static final long WARM_UP_MS = 100;
+
+    private final PrintStream out;
+    private final BlockingQueue<String> commands = new LinkedBlockingQueue<>();
+
+    // Settings from INFO, in milliseconds and bytes; 0 means no limit
+    private long turnTimeoutMs = 30_000;
+    private long matchTimeoutMs = 0;
+    private long timeLeftMs = 0;
+    private long maxMemory = 0;
+    private int rule = 0;
+
+    private Game game;
+    // Search of the engine's move in progress, cancelled by END
+    private volatile SearchHandle search;
+
+    private Gomocup(PrintStream out) {
+        this.out = out;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        // Keep stdout for the protocol; everything else the engine prints goes to stderr
+        PrintStream protocol = new PrintStream(System.out, true);
+        System.setOut(System.err);
+
+        AI.setDifficulty(args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_DIFFICULTY);
+        AI.setSearchThreads(args.length > 1 ? Integer.parseInt(args[1]) : 1);
+        AI.setPonderEnabled(false);
+        new Gomocup(protocol).run();
+    }
+
+    private void run() throws InterruptedException {
+        Thread reader = new Thread(this::readCommands, "Gomocup-reader");
+        reader.setDaemon(true);
+        reader.start();
+        while (true) {
+            String line = commands.take().trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            String[] parts = line.split("\\s+", 2);
+            String command = parts[0].toUpperCase();
+            String argument = parts.length > 1 ? parts[1].trim() : "";
+            if (command.equals("END")) {
+                return;
+            }
+            try {
+                handle(command, argument);
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                respond("ERROR " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Reads stdin into the command queue. END also cancels a running search
+     * at once, so the engine exits without finishing its move.
+     */
+    private void readCommands() {
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(System.in))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.trim().equalsIgnoreCase("END")) {
+                    SearchHandle running = search;
+                    if (running != null) {
+                        running.cancel();
+                    }
+                }
+                commands.add(line);
+            }
+        } catch (IOException e) {
+            System.err.println("Gomocup: cannot read commands: " + e.getMessage());
+        }
+        commands.add("END");
+    }
+
+    private void handle(String command, String argument) throws InterruptedException {
+        switch (command) {
+            case "START":
+                start(argument);
+                break;
+            case "RESTART":
+                game = null;
+                respond("OK");
+                break;
+            case "BEGIN":
+                game = newGame(Game.BLACK, new Stone[0]);
+                playEngineMove();
+                break;
+            case "TURN":
+                if (game == null) {
+                    game = newGame(Game.WHITE, new Stone[0]);
+                }
+                int[] move = parseMove(argument);
+                game.play(move[0], move[1]);
+                playEngineMove();
+                break;
+            case "BOARD":
+                readBoard();
+                playEngineMove();
+                break;
+            case "TAKEBACK":
+                takeBack(parseMove(argument));
+                respond("OK");
+                break;
+            case "INFO":
+                info(argument);
+                break;
+            case "ABOUT":
+                respond("name=\"WUZIQI\", version=\"1.0\", author=\"Fatmanzbx\", country=\"CN\"");
+                break;
+            default:
+                respond("UNKNOWN command " + command);
+        }
+    }
+
+    private void start(String argument) {
+        int size;
+        try {
+            size = Integer.parseInt(argument);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("bad board size " + argument);
+        }
+        if (size != Game.BOARD_SIZE) {
+            throw new IllegalArgumentException("unsupported size " + size + ", only " + Game.BOARD_SIZE);
+        }
+        game = null;
+        warmUp();
+        respond("OK");
+    }
+
+    /**
+     * Loads and initialises the engine's classes and tables with a short
+     * search, so the first real move is not charged for them (several
+     * hundred milliseconds on a cold JVM).
+     */
+    private void warmUp() {
+        Stone[] stones = {null, new Stone(Game.BLACK, 7, 7), new Stone(Game.WHITE, 8, 8), new Stone(Game.BLACK, 7, 8)};
+        new Game(Game.WHITE, stones).playEngineMove(SearchHandle.timed(WARM_UP_MS, 0, null));
+    }
+
+    /**
+     * Reads the stones after BOARD up to DONE. The brain is to move, so it
+     * plays black if both sides have as many stones, white otherwise.
+     */
+    private void readBoard() throws InterruptedException {
+        // Moves from index 1, as {row, col}
+        int[][] own = new int[Game.BOARD_SIZE * Game.BOARD_SIZE + 1][];
+        int[][] opponent = new int[Game.BOARD_SIZE * Game.BOARD_SIZE + 1][];
+        int ownCount = 0;
+        int opponentCount = 0;
+        String error = null;
+        String line;
+        while (!(line = commands.take().trim()).equalsIgnoreCase("DONE")) {
+            if (line.equalsIgnoreCase("END")) {
+                // Put it back for the main loop
+                commands.add(line);
+                throw new IllegalStateException("END before DONE");
+            }
+            // Read on to DONE after an error, so the rest is not taken for commands
+            try {
+                String[] fields = line.split(",");
+                if (fields.length != 3) {
+                    throw new IllegalArgumentException("bad board line " + line);
+                }
+                int[] move = parseMove(fields[0] + "," + fields[1]);
+                if (ownCount + opponentCount == Game.BOARD_SIZE * Game.BOARD_SIZE) {
+                    throw new IllegalArgumentException("too many stones");
+                }
+                switch (fields[2].trim()) {
+                    case "1":
+                        own[++ownCount] = move;
+                        break;
+                    case "2":
+                        opponent[++opponentCount] = move;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("continuous games are not supported");
+                }
+            } catch (IllegalArgumentException e) {
+                if (error == null) {
+                    error = e.getMessage();
+                }
+            }
+        }
+        if (error != null) {
+            throw new IllegalArgumentException(error);
+        }
+        int engineColor;
+        if (ownCount == opponentCount) {
+            engineColor = Game.BLACK;
+        } else if (opponentCount == ownCount + 1) {
+            engineColor = Game.WHITE;
+        } else {
+            throw new IllegalArgumentException(ownCount + " own and " + opponentCount + " opponent stones");
+        }
+        // Alternate the two sides so the history stays in turn order
+        Stone[] stones = new Stone[ownCount + opponentCount + 1];
+        int[][] black = engineColor == Game.BLACK ? own : opponent;
+        int[][] white = engineColor == Game.BLACK ? opponent : own;
+        for (int i = 1; i < stones.length; i++) {
+            int[] move = i % 2 == 1 ? black[(i + 1) / 2] : white[i / 2];
+            stones[i] = new Stone(i % 2 == 1 ? Game.BLACK : Game.WHITE, move[0], move[1]);
+        }
+        game = newGame(engineColor, stones);
+    }
+
+    private void takeBack(int[] move) {
+        int[] last = game != null ? game.getLastMove() : null;
+        if (last == null || last[0] != move[0] || last[1] != move[1]) {
+            throw new IllegalArgumentException("not the last move " + move[0] + "," + move[1]);
+        }
+        game.undo(1);
+    }
+
+    private void info(String argument) {
+        String[] parts = argument.split("\\s+", 2);
+        if (parts.length < 2) {
+            return;
+        }
+        String key = parts[0].toLowerCase();
+        long value;
+        try {
+            value = Long.parseLong(parts[1].trim());
+        } catch (NumberFormatException e) {
+            // Keys with text values (folder) are not used
+            return;
+        }
+        switch (key) {
+            case "timeout_turn":
+                turnTimeoutMs = value;
+                break;
+            case "timeout_match":
+                matchTimeoutMs = value;
+                timeLeftMs = value;
+                break;
+            case "time_left":
+                timeLeftMs = value;
+                break;
+            case "max_memory":
+                setMaxMemory(value);
+                break;
+            case "rule":
+                if (value != 0 && value != RULE_RENJU && value != (RULE_RENJU | RULE_EXACT_FIVE)) {
+                    throw new IllegalArgumentException("rule " + value + " is not supported, "
+                        + "only freestyle (0) and renju (4)");
+                }
+                rule = (int) value;
+                if (game != null) {
+                    game.setBanHandEnabled((rule & RULE_RENJU) != 0);
+                }
+                break;
+            default:
+                // game_type, evaluate and unknown keys do not change the engine
+        }
+    }
+
+    /**
+     * Sizes the transposition table for max_memory. A game in progress is
+     * rebuilt so its engine allocates the new table.
+     */
+    private void setMaxMemory(long bytes) {
+        maxMemory = bytes;
+        int before = AI.getHashSizeMb();
+        AI.setHashSizeMb(hashSizeMb());
+        if (game != null && AI.getHashSizeMb() != before) {
+            Stone[] stones = new Stone[game.getMoveCount() + 1];
+            for (int i = 1; i < stones.length; i++) {
+                stones[i] = game.getStone(i);
+            }
+            game = newGame(game.getEngineColor(), stones);
+        }
+    }
+
+    /**
+     * Gets the transposition table size for max_memory: a share of it, but
+     * never more than half of the heap. The default without a limit.
+     */
+    private int hashSizeMb() {
+        long heapMb = Runtime.getRuntime().maxMemory() / (1024 * 1024);
+        long sizeMb = maxMemory > 0 ? maxMemory * HASH_MEMORY_PCT / 100 / (1024 * 1024) : AI.getHashSizeMb();
+        return (int) Math.max(1, Math.min(sizeMb, heapMb / 2));
+    }
+
+    private Game newGame(int engineColor, Stone[] stones) {
+        Game created = new Game(engineColor, stones);
+        created.setBanHandEnabled((rule & RULE_RENJU) != 0);
+        return created;
+    }
+
+    /**
+     * Searches and plays the engine's move, answers it, and charges its
+     * time to the match clock.
+     */
+    private void playEngineMove() {
+        long started = System.currentTimeMillis();
+        long timeLimitMs = moveTimeLimit();
+        SearchHandle handle = SearchHandle.timed(timeLimitMs, started + moveDeadline(), null);
+        search = handle;
+        int[] move;
+        try {
+            move = game.playEngineMove(handle);
+        } finally {
+            search = null;
+        }
+        if (handle.isCancelled()) {
+            // END arrived during the search; no answer is expected
+            return;
+        }
+        respond(move[0] + "," + move[1]);
+        if (matchTimeoutMs > 0) {
+            timeLeftMs = Math.max(0, timeLeftMs - (System.currentTimeMillis() - started));
+        }
+    }
+
+    /**
+     * Gets the time the search plans with: the turn limit, or the match
+     * time left spread over MOVES_TO_GO moves if that is less.
+     */
+    private long moveTimeLimit() {
+        long limitMs = moveDeadline();
+        if (matchTimeoutMs > 0) {
+            limitMs = Math.min(limitMs, timeLeftMs / MOVES_TO_GO);
+        }
+        return Math.max(1, limitMs);
+    }
+
+    /**
+     * Gets the time after which the search must stop: within both the turn
+     * limit and the match time left.
+     */
+    private long moveDeadline() {
+        long limitMs = turnTimeoutMs > 0 ? turnTimeoutMs : 1;
+        if (matchTimeoutMs > 0) {
+            limitMs = Math.min(limitMs, timeLeftMs);
+        }
+        return Math.max(1, limitMs - RESPONSE_MARGIN_MS);
+    }
+
+    private static int[] parseMove(String argument) {
+        String[] fields = argument.split(",");
+        try {
+            if (fields.length == 2) {
+                int row = Integer.parseInt(fields[0].trim());
+                int col = Integer.parseInt(fields[1].trim());
+                if (BitBoard.isValid(row, col)) {
+                    return new int[]{row, col};
+                }
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("bad move " + argument);
+    }
+
+    private void respond(String line) {
+        out.println(line);
+    }
+}
@@ -440,6 +440,15 @@ public class Main extends JFrame {
         }
     }
 
+    /**
+     * Closes the window, cancelling any AI search of its game first.
+     */
+    @Override
+    public void dispose() {
+        chessBoard.cancelSearch();
+        super.dispose();
+    }
+
     /**
      * Opens the main menu.
      */
@@ -460,6 +469,7 @@ public class Main extends JFrame {
         try {
             UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
         } catch (Exception e) {}
+        SearchMetrics.register();
         
         Start menuFrame = new Start();
         menuFrame.setTitle("Gobang - Select Mode");
@@ -0,0 +1,86 @@
+/**
+ * Table-driven line scorer.
+ * A line is scored by sliding a 6-cell window over it; every window is
+ * encoded from the own/opponent bit masks and looked up in a table that
+ * is built once from the pattern list. The result is exactly the sum of
+ * all (overlapping) pattern occurrences in the line, without building
+ * any strings.
+ *
+ * Patterns use '1' = own stone, '0' = empty, '2' = opponent stone and may
+ * be at most {@link #WINDOW} cells long. Cells past the end of the line
+ * never match anything.
+ */
+class PatternTable {
+
+    static final int WINDOW = 6;
+
+    private static final int WINDOW_MASK = (1 << WINDOW) - 1;
+    private static final long EDGE = WINDOW_MASK;
+
+    // Indexed by ownBits | oppBits << WINDOW; a cell with both bits set is off the line
+    private final int[] table = new int[1 << (WINDOW * 2)];
+    private final int minPatternLength;
+
+    /**
+     * Builds the table for a pattern list.
+     * @param patterns Patterns to count
+     * @param weights Score added for each occurrence of the matching pattern
+     */
+    PatternTable(String[] patterns, int[] weights) {
+        int minLen = WINDOW;
+        for (String p : patterns) {
+            if (p.length() > WINDOW) {
+                throw new IllegalArgumentException("Pattern longer than window: " + p);
+            }
+            minLen = Math.min(minLen, p.length());
+        }
+        this.minPatternLength = minLen;
+
+        char[] cells = new char[WINDOW];
+        for (int idx = 0; idx < table.length; idx++) {
+            for (int i = 0; i < WINDOW; i++) {
+                boolean own = (idx >>> i & 1) != 0;
+                boolean opp = (idx >>> (WINDOW + i) & 1) != 0;
+                if (own && opp) cells[i] = 'x';
+                else if (own) cells[i] = '1';
+                else if (opp) cells[i] = '2';
+                else cells[i] = '0';
+            }
+            int score = 0;
+            for (int k = 0; k < patterns.length; k++) {
+                if (startsWith(cells, patterns[k])) {
+                    score += weights[k];
+                }
+            }
+            table[idx] = score;
+        }
+    }
+
+    private static boolean startsWith(char[] cells, String pattern) {
+        for (int i = 0; i < pattern.length(); i++) {
+            if (cells[i] != pattern.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Scores the cells lo..hi of a line.
+     * @param own Bit mask of own stones on the line
+     * @param opp Bit mask of opponent stones on the line
+     * @param lo First valid bit of the line
+     * @param hi Last valid bit of the line
+     * @return Sum of the weights of all pattern occurrences
+     */
+    int score(long own, long opp, int lo, int hi) {
+        int len = hi - lo + 1;
+        long pad = EDGE << len;
+        long o = (own >>> lo) | pad;
+        long p = (opp >>> lo) | pad;
+        int score = 0;
+        for (int s = 0; s <= len - minPatternLength; s++) {
+            int idx = (int) (o >>> s) & WINDOW_MASK | ((int) (p >>> s) & WINDOW_MASK) << WINDOW;
+            score += table[idx];
+        }
+        return score;
+    }
+}
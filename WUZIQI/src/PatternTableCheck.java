@@ -0,0 +1,95 @@
+/**
+ * Exhaustive check of the table-driven line scoring.
+ * Enumerates every line of 5 to 15 cells (each cell own, empty or
+ * opponent) and compares PatternTable's score with the sum of all
+ * overlapping pattern occurrences counted on a string, the way lines were
+ * scored before the table. Lines are placed at different offsets within
+ * the line mask, as diagonals are on the board.
+ *
+ * Usage: java -cp bin PatternTableCheck
+ * Exits with 1 on the first few mismatches.
+ */
+public class PatternTableCheck {
+
+    private static final int MIN_LENGTH = 5;
+    private static final int MAX_LENGTH = AI.BOARD_SIZE;
+    private static final int MAX_REPORTED = 10;
+
+    public static void main(String[] args) {
+        long lines = 0;
+        int mismatches = 0;
+        char[] cells = new char[MAX_LENGTH];
+        int[] digits = new int[MAX_LENGTH];
+        for (int length = MIN_LENGTH; length <= MAX_LENGTH; length++) {
+            // Short lines start at bit 0 or end at the last bit, like diagonals
+            int lo = length % 2 == 0 ? 0 : MAX_LENGTH - length;
+            java.util.Arrays.fill(digits, 0);
+            while (true) {
+                long own = 0;
+                long opp = 0;
+                for (int i = 0; i < length; i++) {
+                    if (digits[i] == 1) {
+                        own |= 1L << (lo + i);
+                        cells[i] = '1';
+                    } else if (digits[i] == 2) {
+                        opp |= 1L << (lo + i);
+                        cells[i] = '2';
+                    } else {
+                        cells[i] = '0';
+                    }
+                }
+                String line = new String(cells, 0, length);
+                int expected = countPatterns(line);
+                int actual = AI.LINE_PATTERNS.score(own, opp, lo, lo + length - 1);
+                if (expected != actual) {
+                    mismatches++;
+                    System.out.println("MISMATCH " + line + ": table " + actual + ", patterns " + expected);
+                    if (mismatches >= MAX_REPORTED) {
+                        System.exit(1);
+                    }
+                }
+                lines++;
+                if (!next(digits, length)) {
+                    break;
+                }
+            }
+        }
+        if (mismatches > 0) {
+            System.exit(1);
+        }
+        System.out.println("All " + lines + " lines of " + MIN_LENGTH + " to " + MAX_LENGTH
+            + " cells score the same as pattern counting");
+    }
+
+    /**
+     * Advances a base-3 counter over the cells of a line.
+     * @return False once every line has been visited
+     */
+    private static boolean next(int[] digits, int length) {
+        for (int i = 0; i < length; i++) {
+            if (++digits[i] < 3) {
+                return true;
+            }
+            digits[i] = 0;
+        }
+        return false;
+    }
+
+    private static int countPatterns(String line) {
+        int score = 0;
+        for (int k = 0; k < AI.LINE_PATTERN_STRINGS.length; k++) {
+            score += countPattern(line, AI.LINE_PATTERN_STRINGS[k]) * AI.LINE_PATTERN_WEIGHTS[k];
+        }
+        return score;
+    }
+
+    private static int countPattern(String line, String pattern) {
+        int count = 0;
+        int idx = line.indexOf(pattern);
+        while (idx != -1) {
+            count++;
+            idx = line.indexOf(pattern, idx + 1);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,147 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Java Flight Recorder events of the engine and the board, so a recording
+ * shows search iterations, whole searches, table allocations and clears,
+ * and AI move round trips next to GC and safepoints. Events cost next to
+ * nothing while JFR is off or the event is disabled; start a recording with
+ * e.g. java -XX:StartFlightRecording=filename=gobang.jfr -cp bin Main.
+ */
+final class SearchEvents {
+
+    private SearchEvents() {
+    }
+
+    @Name("gobang.SearchIteration")
+    @Label("Search Iteration")
+    @Category({"Gobang", "Search"})
+    @Description("One iteration of the main search at the root")
+    static class Iteration extends Event {
+        @Label("Depth")
+        int depth;
+
+        @Label("Completed")
+        @Description("False if the iteration was cut off by the time limit, a cancel or the node budget")
+        boolean completed;
+
+        @Label("Best Row")
+        int row;
+
+        @Label("Best Column")
+        int col;
+
+        @Label("Score")
+        int score;
+
+        @Label("Nodes")
+        @Description("Main search and quiescence nodes of this iteration")
+        int nodes;
+
+        @Label("Selective Depth")
+        int selDepth;
+    }
+
+    @Name("gobang.Search")
+    @Label("Search")
+    @Category({"Gobang", "Search"})
+    @Description("One getResult call, from the start of the search to the returned move")
+    static class Search extends Event {
+        @Label("Difficulty")
+        int difficulty;
+
+        @Label("Threads")
+        int threads;
+
+        @Label("Deterministic")
+        boolean deterministic;
+
+        @Label("Pondering")
+        @Description("Whether the search ended as a ponder search")
+        boolean pondering;
+
+        @Label("Depth")
+        @Description("Last completed depth, 0 if the move was decided before the main search")
+        int depth;
+
+        @Label("Row")
+        int row;
+
+        @Label("Column")
+        int col;
+
+        @Label("Score")
+        int score;
+
+        @Label("Nodes")
+        long nodes;
+
+        @Label("Quiescence Nodes")
+        long quiescenceNodes;
+
+        @Label("Table Hits")
+        long ttHits;
+
+        @Label("Pre-search Time")
+        @Description("Threat solvers, threat defences and tactical checks before the main search")
+        @Timespan(Timespan.NANOSECONDS)
+        long preSearchTime;
+    }
+
+    @Name("gobang.TableAllocation")
+    @Label("Transposition Table Allocation")
+    @Category({"Gobang", "Transposition Table"})
+    @Description("A transposition table allocated for a new engine, e.g. after AI.setHashSizeMb")
+    static class TableAllocation extends Event {
+        @Label("Size (MB)")
+        int sizeMb;
+
+        @Label("Entries")
+        int entries;
+    }
+
+    @Name("gobang.TableClear")
+    @Label("Transposition Table Clear")
+    @Category({"Gobang", "Transposition Table"})
+    static class TableClear extends Event {
+        @Label("Entries")
+        int entries;
+    }
+
+    @Name("gobang.AIMove")
+    @Label("AI Move")
+    @Category({"Gobang", "Board"})
+    @Description("An AI move of the board, from startAIMove to the stone placed on the event dispatch thread")
+    static class AIMove extends Event {
+        @Label("Color")
+        int color;
+
+        @Label("Row")
+        int row;
+
+        @Label("Column")
+        int col;
+
+        @Label("Applied")
+        @Description("False if the move was dropped after an undo or leaving the game")
+        boolean applied;
+
+        @Label("Session Wait")
+        @Description("Time the worker waited for the engine session, e.g. for a finishing cancelled search")
+        @Timespan(Timespan.NANOSECONDS)
+        long sessionWait;
+
+        @Label("Search Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long searchTime;
+
+        @Label("EDT Wait")
+        @Description("Time from the end of the search until the event dispatch thread handled the result")
+        @Timespan(Timespan.NANOSECONDS)
+        long edtWait;
+    }
+}
@@ -0,0 +1,213 @@
+/**
+ * Handle to one engine search, passed to AI.getResult or EngineSession.getResult.
+ *
+ * Another thread can cancel the search through it, and the search stops at
+ * whichever comes first of its time limit, the handle's absolute deadline
+ * and the handle's node budget. The time limit is the difficulty's unless
+ * the handle sets its own (see timed). A cancelled or cut-off search still returns
+ * the best move of its last completed iteration. While it runs, the handle
+ * holds the latest completed result, and an optional listener is told about
+ * each one on the search thread.
+ *
+ * A deterministic handle (see deterministic) stops only at a fixed depth or
+ * node count and never consults the clock, so a fresh engine returns the same
+ * move, score and node count for the same position on every run and every
+ * machine, given the same difficulty and hash size.
+ *
+ * A handle belongs to a single search and is not reused.
+ */
+public class SearchHandle {
+
+    /**
+     * Receives the result of each completed iteration. Called on the search
+     * thread, so it must return quickly and must not touch the engine.
+     */
+    public interface ProgressListener {
+        /**
+         * @param depth Completed depth, 0 for a move decided before the main search
+         *              (a threat-solver win or a forced reply)
+         * @param row Best move row
+         * @param col Best move column
+         * @param score Score of the best move for the engine
+         */
+        void onProgress(int depth, int row, int col, int score);
+    }
+
+    private final long timeLimitMs;
+    private final long deadlineMs;
+    private final int nodeLimit;
+    private final int maxDepth;
+    private final boolean deterministic;
+    private final ProgressListener listener;
+
+    private volatile AI engine;
+    private volatile boolean cancelled = false;
+    private volatile boolean done = false;
+
+    // Latest completed iteration; the move is a cell index so it is read in one go
+    private volatile int bestCell = -1;
+    private volatile int depth = 0;
+    private volatile int score = 0;
+
+    /**
+     * Creates a handle that only adds cancellation to the normal time limit.
+     */
+    public SearchHandle() {
+        this(0, 0, null);
+    }
+
+    /**
+     * @param deadlineMs Absolute deadline (System.currentTimeMillis), 0 for none
+     * @param nodeLimit Node budget of the threat solvers, main search and quiescence together, 0 for none
+     * @param listener Progress listener, or null
+     */
+    public SearchHandle(long deadlineMs, int nodeLimit, ProgressListener listener) {
+        this(0, deadlineMs, nodeLimit, 0, false, listener);
+    }
+
+    private SearchHandle(long timeLimitMs, long deadlineMs, int nodeLimit, int maxDepth, boolean deterministic,
+                         ProgressListener listener) {
+        if (timeLimitMs < 0 || deadlineMs < 0 || nodeLimit < 0 || maxDepth < 0) {
+            throw new IllegalArgumentException("timeLimitMs, deadlineMs, nodeLimit and maxDepth must not be negative");
+        }
+        this.timeLimitMs = timeLimitMs;
+        this.deadlineMs = deadlineMs;
+        this.nodeLimit = nodeLimit;
+        this.maxDepth = maxDepth;
+        this.deterministic = deterministic;
+        this.listener = listener;
+    }
+
+    /**
+     * Creates a handle for a reproducible search: no time limit and no
+     * decision taken on the clock, a single thread, and the threat solvers
+     * bounded by their node limits only. The node budget also covers the
+     * solvers' nodes, so it bounds the whole search. With neither limit set,
+     * the search runs to the difficulty's maximum depth however long that takes.
+     * @param maxDepth Last iteration to search, 0 for the difficulty's maximum depth
+     * @param nodeLimit Node budget as in the other constructor, 0 for none
+     * @param listener Progress listener, or null
+     */
+    public static SearchHandle deterministic(int maxDepth, int nodeLimit, ProgressListener listener) {
+        return new SearchHandle(0, 0, nodeLimit, maxDepth, true, listener);
+    }
+
+    /**
+     * Creates a handle whose time limit replaces the difficulty's, e.g. a
+     * move's share of a tournament clock. The search splits the limit
+     * between the threat solvers and its iterations as usual, may extend it
+     * once after a score drop, and never runs past the deadline.
+     * @param timeLimitMs Time limit in milliseconds, at least 1
+     * @param deadlineMs Absolute deadline (System.currentTimeMillis), 0 for none
+     * @param listener Progress listener, or null
+     */
+    public static SearchHandle timed(long timeLimitMs, long deadlineMs, ProgressListener listener) {
+        if (timeLimitMs < 1) {
+            throw new IllegalArgumentException("timeLimitMs must be at least 1");
+        }
+        return new SearchHandle(timeLimitMs, deadlineMs, 0, 0, false, listener);
+    }
+
+    /**
+     * Asks the search to return as soon as possible. Safe to call from any
+     * thread, before or during the search; does not block.
+     */
+    public void cancel() {
+        cancelled = true;
+        AI attached = engine;
+        if (attached != null) {
+            attached.cancel(this);
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Gets whether the search has returned.
+     */
+    public boolean isDone() {
+        return done;
+    }
+
+    /**
+     * Gets the time limit in milliseconds, 0 for the difficulty's own.
+     */
+    public long getTimeLimitMs() {
+        return timeLimitMs;
+    }
+
+    public long getDeadlineMs() {
+        return deadlineMs;
+    }
+
+    public int getNodeLimit() {
+        return nodeLimit;
+    }
+
+    /**
+     * Gets the depth limit of a deterministic handle, 0 for the difficulty's own.
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public boolean isDeterministic() {
+        return deterministic;
+    }
+
+    /**
+     * Gets the best move of the latest completed iteration, or the move
+     * the search returned once it is done.
+     * @return {row, col}, or null before the first one
+     */
+    public int[] getBestMove() {
+        int cell = bestCell;
+        return cell >= 0 ? new int[]{cell / AI.BOARD_SIZE, cell % AI.BOARD_SIZE} : null;
+    }
+
+    /**
+     * Gets the depth of the latest completed iteration.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Gets the score of the latest completed iteration, for the engine.
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * Binds the handle to the engine that runs its search.
+     */
+    void attach(AI ai) {
+        if (engine != null && engine != ai) {
+            throw new IllegalStateException("SearchHandle is already used by another engine");
+        }
+        engine = ai;
+        // A cancel that raced with attaching may have missed the engine
+        if (cancelled) {
+            ai.cancel(this);
+        }
+    }
+
+    void report(int depth, int row, int col, int score) {
+        this.depth = depth;
+        this.score = score;
+        this.bestCell = row * AI.BOARD_SIZE + col;
+        if (listener != null) {
+            listener.onProgress(depth, row, col, score);
+        }
+    }
+
+    void finish(int[] move) {
+        if (move != null) {
+            bestCell = move[0] * AI.BOARD_SIZE + move[1];
+        }
+        done = true;
+    }
+}
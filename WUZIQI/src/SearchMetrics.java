@@ -0,0 +1,209 @@
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Collects the statistics of every engine search into running totals and
+ * publishes them as an MXBean, so a JMX console or exporter can chart nodes
+ * per second, table efficiency and where the search time goes.
+ */
+public class SearchMetrics implements SearchMetricsMXBean, SearchStats.Listener {
+
+    public static final String OBJECT_NAME = "gobang:type=SearchMetrics";
+
+    private static SearchMetrics instance;
+
+    private long searches;
+    private long totalNodes;
+    private long totalSearchNs;
+    private long totalPreSearchNs;
+    private long totalTtProbes;
+    private long totalTtHits;
+    private long totalTtCutoffs;
+    private long totalCutoffs;
+    private final long[] cutoffIndex = new long[SearchStats.CUTOFF_INDEX_BUCKETS];
+    private long evaluationNs;
+    private long moveGenerationNs;
+    private long foulCheckNs;
+    private SearchStats last;
+
+    /**
+     * Registers the MXBean and its stats listener, once per JVM.
+     * @return The registered instance
+     */
+    public static synchronized SearchMetrics register() {
+        if (instance == null) {
+            SearchMetrics metrics = new SearchMetrics();
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, new ObjectName(OBJECT_NAME));
+            } catch (JMException e) {
+                throw new IllegalStateException("Cannot register " + OBJECT_NAME, e);
+            }
+            AI.addStatsListener(metrics);
+            instance = metrics;
+        }
+        return instance;
+    }
+
+    @Override
+    public synchronized void onSearchFinished(SearchStats stats) {
+        searches++;
+        totalNodes += stats.getNodes() + stats.getQuiescenceNodes();
+        totalSearchNs += stats.getElapsedNs();
+        totalPreSearchNs += stats.getPreSearchNs();
+        totalTtProbes += stats.getTtProbes();
+        totalTtHits += stats.getTtHits();
+        totalTtCutoffs += stats.getTtCutoffs();
+        totalCutoffs += stats.getCutoffs();
+        for (int i = 0; i < cutoffIndex.length; i++) {
+            cutoffIndex[i] += stats.getCutoffsAtIndex(i);
+        }
+        evaluationNs += stats.getEvaluationNs();
+        moveGenerationNs += stats.getMoveGenerationNs();
+        foulCheckNs += stats.getFoulCheckNs();
+        last = stats;
+    }
+
+    @Override
+    public synchronized long getSearches() {
+        return searches;
+    }
+
+    @Override
+    public synchronized long getTotalNodes() {
+        return totalNodes;
+    }
+
+    @Override
+    public synchronized long getTotalSearchTimeMs() {
+        return totalSearchNs / 1_000_000;
+    }
+
+    @Override
+    public synchronized long getTotalPreSearchTimeMs() {
+        return totalPreSearchNs / 1_000_000;
+    }
+
+    @Override
+    public synchronized long getNodesPerSecond() {
+        return totalSearchNs > 0 ? totalNodes * 1_000_000_000L / totalSearchNs : 0;
+    }
+
+    @Override
+    public synchronized long getTotalTtProbes() {
+        return totalTtProbes;
+    }
+
+    @Override
+    public synchronized long getTotalTtHits() {
+        return totalTtHits;
+    }
+
+    @Override
+    public synchronized long getTotalTtCutoffs() {
+        return totalTtCutoffs;
+    }
+
+    @Override
+    public synchronized long getTotalCutoffs() {
+        return totalCutoffs;
+    }
+
+    @Override
+    public synchronized long[] getCutoffIndexHistogram() {
+        return cutoffIndex.clone();
+    }
+
+    @Override
+    public synchronized long getEvaluationTimeMs() {
+        return evaluationNs / 1_000_000;
+    }
+
+    @Override
+    public synchronized long getMoveGenerationTimeMs() {
+        return moveGenerationNs / 1_000_000;
+    }
+
+    @Override
+    public synchronized long getFoulCheckTimeMs() {
+        return foulCheckNs / 1_000_000;
+    }
+
+    @Override
+    public synchronized int getLastDepth() {
+        return last != null ? last.getDepth() : 0;
+    }
+
+    @Override
+    public synchronized int getLastSelDepth() {
+        if (last == null || last.getIterations() == 0) {
+            return 0;
+        }
+        return last.getIterationSelDepth(last.getIterations() - 1);
+    }
+
+    @Override
+    public synchronized long getLastNodes() {
+        return last != null ? last.getNodes() + last.getQuiescenceNodes() : 0;
+    }
+
+    @Override
+    public synchronized long getLastElapsedMs() {
+        return last != null ? last.getElapsedNs() / 1_000_000 : 0;
+    }
+
+    @Override
+    public synchronized long getLastNodesPerSecond() {
+        return last != null ? last.getNodesPerSecond() : 0;
+    }
+
+    @Override
+    public synchronized double getLastEffectiveBranchingFactor() {
+        return last != null ? last.getEffectiveBranchingFactor() : 0.0;
+    }
+
+    @Override
+    public synchronized double getLastTtHitRate() {
+        return last != null ? last.getTtHitRate() : 0.0;
+    }
+
+    @Override
+    public synchronized int[] getLastIterationNodes() {
+        if (last == null) {
+            return new int[0];
+        }
+        int[] nodes = new int[last.getIterations()];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = last.getIterationNodes(i);
+        }
+        return nodes;
+    }
+
+    @Override
+    public boolean isProfiling() {
+        return AI.isProfiling();
+    }
+
+    @Override
+    public void setProfiling(boolean enabled) {
+        AI.setProfiling(enabled);
+    }
+
+    @Override
+    public synchronized void reset() {
+        searches = 0;
+        totalNodes = 0;
+        totalSearchNs = 0;
+        totalPreSearchNs = 0;
+        totalTtProbes = 0;
+        totalTtHits = 0;
+        totalTtCutoffs = 0;
+        totalCutoffs = 0;
+        java.util.Arrays.fill(cutoffIndex, 0);
+        evaluationNs = 0;
+        moveGenerationNs = 0;
+        foulCheckNs = 0;
+        last = null;
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * JMX view of engine search statistics (see SearchMetrics), registered as
+ * gobang:type=SearchMetrics. Totals run over every search since start or
+ * the last reset; "last" values describe the most recent search.
+ */
+public interface SearchMetricsMXBean {
+
+    long getSearches();
+
+    /**
+     * Gets the main search and quiescence nodes of all searches.
+     */
+    long getTotalNodes();
+
+    long getTotalSearchTimeMs();
+
+    /**
+     * Gets the time of all searches spent before the main search
+     * (threat solvers, threat defences and tactical checks).
+     */
+    long getTotalPreSearchTimeMs();
+
+    long getNodesPerSecond();
+
+    long getTotalTtProbes();
+
+    long getTotalTtHits();
+
+    long getTotalTtCutoffs();
+
+    long getTotalCutoffs();
+
+    /**
+     * Gets the beta cutoffs by index of the move that caused them; the last
+     * bucket holds that index and every later one.
+     */
+    long[] getCutoffIndexHistogram();
+
+    /**
+     * Gets the time in evaluation while profiling is on.
+     */
+    long getEvaluationTimeMs();
+
+    /**
+     * Gets the time in move generation while profiling is on.
+     */
+    long getMoveGenerationTimeMs();
+
+    /**
+     * Gets the time in foul checks while profiling is on.
+     */
+    long getFoulCheckTimeMs();
+
+    int getLastDepth();
+
+    int getLastSelDepth();
+
+    long getLastNodes();
+
+    long getLastElapsedMs();
+
+    long getLastNodesPerSecond();
+
+    double getLastEffectiveBranchingFactor();
+
+    double getLastTtHitRate();
+
+    /**
+     * Gets the main search and quiescence nodes of each iteration of the last search.
+     */
+    int[] getLastIterationNodes();
+
+    /**
+     * Gets whether evaluation, move generation and foul checks are timed (AI.setProfiling).
+     */
+    boolean isProfiling();
+
+    void setProfiling(boolean enabled);
+
+    /**
+     * Clears the totals.
+     */
+    void reset();
+}
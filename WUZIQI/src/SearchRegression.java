@@ -0,0 +1,209 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Search regression harness.
+ * Searches every position of a suite to fixed depths with deterministic
+ * handles and compares best move, score, node counts (threat solvers
+ * included), transposition table hits and cutoffs with a golden file. Any
+ * difference means the search behaves differently, so a change meant to be
+ * a pure speed-up (alphaBeta, move generation, evaluation) must leave the
+ * golden file untouched.
+ *
+ * Positions are save files in the save-slot format (color,row,col lines),
+ * so a game saved from the board can be copied into the suite as is. The
+ * side to move is the opponent of the last stone.
+ *
+ * Usage: java -cp bin SearchRegression [--update] [suiteDir]
+ * Exits with 1 on drift; --update rewrites the golden file instead.
+ */
+public class SearchRegression {
+
+    // Engine settings the golden counts depend on
+    private static final int DIFFICULTY = 1;
+    private static final int HASH_SIZE_MB = 16;
+    private static final int[] DEPTHS = {2, 4};
+
+    private static final String GOLDEN_FILE = "golden.txt";
+
+    public static void main(String[] args) throws IOException {
+        boolean update = false;
+        File suite = null;
+        for (String arg : args) {
+            if (arg.equals("--update")) {
+                update = true;
+            } else {
+                suite = new File(arg);
+            }
+        }
+        if (suite == null) {
+            suite = findSuiteDirectory();
+        }
+        File[] files = suite.listFiles((dir, name) -> name.endsWith(".txt") && !name.equals(GOLDEN_FILE));
+        if (files == null || files.length == 0) {
+            System.err.println("No positions in " + suite.getPath());
+            System.exit(2);
+        }
+        Arrays.sort(files);
+
+        AI.setDifficulty(DIFFICULTY);
+        AI.setHashSizeMb(HASH_SIZE_MB);
+
+        Map<String, String> results = new LinkedHashMap<>();
+        for (File file : files) {
+            int[][] board = new int[AI.BOARD_SIZE][AI.BOARD_SIZE];
+            int lastColor = loadSaveFile(file, board);
+            for (int depth : DEPTHS) {
+                results.put(file.getName() + " " + DIFFICULTY + " " + depth, search(board, lastColor, depth));
+            }
+        }
+
+        File golden = new File(suite, GOLDEN_FILE);
+        if (update) {
+            writeGolden(golden, results);
+            System.out.println("Wrote " + results.size() + " results to " + golden.getPath());
+            return;
+        }
+
+        Map<String, String> expected = readGolden(golden);
+        int drifted = 0;
+        for (Map.Entry<String, String> result : results.entrySet()) {
+            String want = expected.remove(result.getKey());
+            if (want == null) {
+                System.out.println("NEW     " + result.getKey() + ": " + result.getValue());
+                drifted++;
+            } else if (!want.equals(result.getValue())) {
+                System.out.println("DRIFT   " + result.getKey() + ": expected " + want + ", got " + result.getValue());
+                drifted++;
+            }
+        }
+        for (String key : expected.keySet()) {
+            System.out.println("MISSING " + key);
+            drifted++;
+        }
+        if (drifted > 0) {
+            System.out.println(drifted + " of " + results.size() + " results differ from " + golden.getPath()
+                + " (run with --update if the change is intended)");
+            System.exit(1);
+        }
+        System.out.println("All " + results.size() + " results match " + golden.getPath());
+    }
+
+    /**
+     * Finds the regression folder, next to the saves folder.
+     */
+    private static File findSuiteDirectory() {
+        for (String path : new String[]{"regression", "../regression", "WUZIQI/regression"}) {
+            File dir = new File(path);
+            if (dir.isDirectory()) {
+                return dir;
+            }
+        }
+        return new File("regression");
+    }
+
+    /**
+     * Searches a position on a new engine.
+     * @return "move score nodes quiescence solver ttHits cutoffs"
+     */
+    private static String search(int[][] board, int lastColor, int depth) {
+        AI ai = new AI(board, lastColor);
+        SearchHandle handle = SearchHandle.deterministic(depth, 0, null);
+        int[] move = ai.getResult(handle);
+        return move[0] + "," + move[1] + " " + handle.getScore()
+            + " " + ai.getNodesEvaluated() + " " + ai.getQuiescenceNodes() + " " + ai.getSolverNodes()
+            + " " + ai.getTtHits() + " " + ai.getCutoffs();
+    }
+
+    /**
+     * Plays the moves of a save file onto an empty board, up to its MOVES= count.
+     * @return The colour of the side that moved last
+     */
+    static int loadSaveFile(File file, int[][] board) throws IOException {
+        List<int[]> stones = new ArrayList<>();
+        int moveCount = -1;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                if (line.startsWith("MOVES=")) {
+                    moveCount = Integer.parseInt(line.substring(6));
+                } else if (line.contains(",")) {
+                    String[] parts = line.split(",");
+                    if (parts.length == 3) {
+                        stones.add(new int[]{
+                            Integer.parseInt(parts[0].trim()),
+                            Integer.parseInt(parts[1].trim()),
+                            Integer.parseInt(parts[2].trim())
+                        });
+                    }
+                }
+            }
+        }
+        if (moveCount < 0 || moveCount > stones.size()) {
+            moveCount = stones.size();
+        }
+        if (moveCount == 0) {
+            throw new IOException(file.getName() + ": no moves");
+        }
+
+        int color = 0;
+        for (int i = 0; i < moveCount; i++) {
+            int[] stone = stones.get(i);
+            color = stone[0];
+            int row = stone[1];
+            int col = stone[2];
+            if ((color != AI.BLACK && color != AI.WHITE) || row < 0 || row >= AI.BOARD_SIZE
+                    || col < 0 || col >= AI.BOARD_SIZE || board[row][col] != AI.EMPTY) {
+                throw new IOException(file.getName() + ": bad move " + (i + 1)
+                    + " (" + color + "," + row + "," + col + ")");
+            }
+            board[row][col] = color;
+        }
+        return color;
+    }
+
+    private static Map<String, String> readGolden(File golden) throws IOException {
+        Map<String, String> expected = new LinkedHashMap<>();
+        if (!golden.exists()) {
+            return expected;
+        }
+        try (BufferedReader reader = new BufferedReader(new FileReader(golden))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                // Key is the first three fields: position, difficulty, depth
+                String[] parts = line.split("\\s+", 4);
+                if (parts.length == 4) {
+                    expected.put(parts[0] + " " + parts[1] + " " + parts[2], parts[3]);
+                }
+            }
+        }
+        return expected;
+    }
+
+    private static void writeGolden(File golden, Map<String, String> results) throws IOException {
+        try (PrintWriter writer = new PrintWriter(golden)) {
+            writer.println("# Search regression golden results, written by SearchRegression --update");
+            writer.println("# Hash " + HASH_SIZE_MB + " MB, one thread");
+            writer.println("# position difficulty depth move score nodes quiescence solver ttHits cutoffs");
+            for (Map.Entry<String, String> result : results.entrySet()) {
+                writer.println(result.getKey() + " " + result.getValue());
+            }
+        }
+    }
+}
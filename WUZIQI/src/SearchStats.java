@@ -0,0 +1,282 @@
+/**
+ * Statistics of one engine search (one getResult call), handed to the
+ * listeners registered with AI.addStatsListener and kept by the engine
+ * until its next search (AI.getLastStats).
+ *
+ * Counts include Lazy SMP helpers; the per-iteration figures come from the
+ * main search only. Times in evaluation, move generation and foul checks
+ * are only measured while AI.setProfiling is on, since reading the clock
+ * around each call costs more than some of the calls themselves; the call
+ * counts are always kept.
+ */
+public class SearchStats {
+
+    /**
+     * Receives the statistics of every finished search. Called on the search
+     * thread once the move is decided, so it must return quickly and must not
+     * touch the engine.
+     */
+    public interface Listener {
+        void onSearchFinished(SearchStats stats);
+    }
+
+    // Beta cutoffs are counted by the index of the move that caused them;
+    // the last bucket holds that index and every later one
+    public static final int CUTOFF_INDEX_BUCKETS = 8;
+
+    // Filled in by AI before the object is published
+    int difficulty;
+    int threads;
+    int row;
+    int col;
+    int score;
+    int depth;
+    long elapsedNs;
+    long preSearchNs;
+    long nodes;
+    long quiescenceNodes;
+    long solverNodes;
+    int[] iterationNodes = new int[0];
+    long[] iterationNs = new long[0];
+    int[] iterationSelDepth = new int[0];
+    long ttProbes;
+    long ttHits;
+    long ttCutoffs;
+    long cutoffs;
+    final long[] cutoffIndex = new long[CUTOFF_INDEX_BUCKETS];
+    long evaluations;
+    long moveGenerations;
+    long foulChecks;
+    long evaluationNs;
+    long moveGenerationNs;
+    long foulCheckNs;
+    boolean profiled;
+
+    SearchStats() {
+    }
+
+    public int getDifficulty() {
+        return difficulty;
+    }
+
+    /**
+     * Gets the number of threads that searched, helpers included.
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Gets the move the search returned as {row, col}.
+     */
+    public int[] getMove() {
+        return new int[]{row, col};
+    }
+
+    /**
+     * Gets the score of the returned move for the engine.
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * Gets the last completed depth, 0 if the move was decided before the
+     * main search (a threat-solver win or a forced reply).
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    public long getElapsedNs() {
+        return elapsedNs;
+    }
+
+    /**
+     * Gets the time before the main search started: threat solvers, threat
+     * defences and tactical checks. Equal to getElapsedNs when the move was
+     * decided there.
+     */
+    public long getPreSearchNs() {
+        return preSearchNs;
+    }
+
+    /**
+     * Gets the main search nodes, without quiescence.
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getQuiescenceNodes() {
+        return quiescenceNodes;
+    }
+
+    /**
+     * Gets the threat solver nodes (own VCF/VCT and threat defences), not
+     * part of getNodes or getNodesPerSecond.
+     */
+    public long getSolverNodes() {
+        return solverNodes;
+    }
+
+    /**
+     * Gets the main search and quiescence nodes per second of the whole search.
+     */
+    public long getNodesPerSecond() {
+        return elapsedNs > 0 ? (nodes + quiescenceNodes) * 1_000_000_000L / elapsedNs : 0;
+    }
+
+    /**
+     * Gets the number of completed iterations; iteration i searched to depth i + 1.
+     */
+    public int getIterations() {
+        return iterationNodes.length;
+    }
+
+    /**
+     * Gets the main search and quiescence nodes of one iteration.
+     * @param iteration 0 for depth 1
+     */
+    public int getIterationNodes(int iteration) {
+        return iterationNodes[iteration];
+    }
+
+    public long getIterationNs(int iteration) {
+        return iterationNs[iteration];
+    }
+
+    /**
+     * Gets the deepest ply reached in one iteration, with extensions and quiescence.
+     */
+    public int getIterationSelDepth(int iteration) {
+        return iterationSelDepth[iteration];
+    }
+
+    /**
+     * Gets the growth in nodes per extra ply over the last completed
+     * iterations: the square root of the ratio to the iteration two plies
+     * shallower, which evens out alpha-beta's odd-even effect, or the plain
+     * ratio with only two iterations.
+     * @return The factor, or 0 with fewer than two iterations
+     */
+    public double getEffectiveBranchingFactor() {
+        int n = iterationNodes.length;
+        if (n >= 3 && iterationNodes[n - 3] > 0) {
+            return Math.sqrt((double) iterationNodes[n - 1] / iterationNodes[n - 3]);
+        }
+        if (n == 2 && iterationNodes[0] > 0) {
+            return (double) iterationNodes[1] / iterationNodes[0];
+        }
+        return 0.0;
+    }
+
+    /**
+     * Gets the transposition table lookups of the main search.
+     */
+    public long getTtProbes() {
+        return ttProbes;
+    }
+
+    /**
+     * Gets the lookups that found the position.
+     */
+    public long getTtHits() {
+        return ttHits;
+    }
+
+    /**
+     * Gets the lookups whose stored bound decided the node without a search.
+     */
+    public long getTtCutoffs() {
+        return ttCutoffs;
+    }
+
+    public double getTtHitRate() {
+        return ttProbes > 0 ? (double) ttHits / ttProbes : 0.0;
+    }
+
+    /**
+     * Gets the beta cutoffs of the main search.
+     */
+    public long getCutoffs() {
+        return cutoffs;
+    }
+
+    /**
+     * Gets the beta cutoffs caused by the move searched at an index.
+     * @param index 0 for the first move; CUTOFF_INDEX_BUCKETS - 1 counts that index and later ones
+     */
+    public long getCutoffsAtIndex(int index) {
+        return cutoffIndex[index];
+    }
+
+    /**
+     * Gets the cutoff index distribution; see getCutoffsAtIndex.
+     */
+    public long[] getCutoffIndexHistogram() {
+        return cutoffIndex.clone();
+    }
+
+    public long getEvaluations() {
+        return evaluations;
+    }
+
+    public long getMoveGenerations() {
+        return moveGenerations;
+    }
+
+    public long getFoulChecks() {
+        return foulChecks;
+    }
+
+    /**
+     * Gets whether the times below were measured (AI.setProfiling).
+     */
+    public boolean isProfiled() {
+        return profiled;
+    }
+
+    /**
+     * Gets the time spent evaluating: static evaluations and the line score
+     * updates of each move and undo.
+     */
+    public long getEvaluationNs() {
+        return evaluationNs;
+    }
+
+    /**
+     * Gets the time spent generating and ordering candidate moves.
+     */
+    public long getMoveGenerationNs() {
+        return moveGenerationNs;
+    }
+
+    /**
+     * Gets the time spent checking black moves against the ban-hand rules.
+     */
+    public long getFoulCheckNs() {
+        return foulCheckNs;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("move ").append(row).append(',').append(col)
+            .append(" score ").append(score)
+            .append(" depth ").append(depth)
+            .append(" nodes ").append(nodes).append('+').append(quiescenceNodes)
+            .append(" solver ").append(solverNodes)
+            .append(" nps ").append(getNodesPerSecond())
+            .append(" ebf ").append(String.format("%.2f", getEffectiveBranchingFactor()))
+            .append(" tt ").append(ttHits).append('/').append(ttProbes)
+            .append(" cutoffs ").append(cutoffs)
+            .append(" ").append(elapsedNs / 1_000_000).append("ms");
+        if (profiled) {
+            sb.append(" (eval ").append(evaluationNs / 1_000_000)
+                .append("ms, movegen ").append(moveGenerationNs / 1_000_000)
+                .append("ms, fouls ").append(foulCheckNs / 1_000_000).append("ms)");
+        }
+        return sb.toString();
+    }
+}
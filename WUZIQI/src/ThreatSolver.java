@@ -0,0 +1,518 @@
+/**
+ * Threat-space solver run by the AI in front of the alpha-beta search.
+ *
+ * VCF (victory by continuous fours): the attacker only plays moves that
+ * make a four, so every defender reply is forced. With the branching
+ * reduced to the attacker's fours the solver reaches depths far beyond
+ * the full-width search in a few milliseconds.
+ *
+ * VCT (victory by continuous threats) also lets the attacker make open
+ * threes. After a three the defender may answer on any cell that stops
+ * it (the attacker's four points on its lines) or with a counter-four,
+ * and the attacker must win against every answer. Fours are tried
+ * before threes, so a VCT search also finds every VCF within its depth.
+ *
+ * The solver works directly on the AI's bitboard and restores it before
+ * returning. Black's moves obey the ban-hand rules; a forced black block
+ * on a forbidden point loses.
+ */
+class ThreatSolver {
+
+    private static final int BOARD_SIZE = BitBoard.BOARD_SIZE;
+    private static final int BLACK = BitBoard.BLACK;
+    private static final int CELLS = BOARD_SIZE * BOARD_SIZE;
+
+    // Attacker moves per line of play (buffers are per attacker ply)
+    private static final int MAX_PLY = 64;
+
+    // Failed positions, keyed by position and attacker, with the depth that failed
+    private static final int HASH_BITS = 16;
+    // Deadline that is never checked, for searches that must not read the clock
+    static final long NO_DEADLINE = Long.MIN_VALUE;
+
+    private static final long VCF_BLACK = 0x5DEECE66DL;
+    private static final long VCF_WHITE = 0x2545F4914F6CDD1DL;
+    private static final long VCT_BLACK = 0x9E3779B97F4A7C15L;
+    private static final long VCT_WHITE = 0xBF58476D1CE4E5B9L;
+
+    private final BitBoard board;
+    private final char[] lineBuffer = new char[9];
+    private final int[][] moveBuffer = new int[MAX_PLY][CELLS];
+    private final int[][] defenseBuffer = new int[MAX_PLY][CELLS];
+    private final AI.ThreatCount threatCount = new AI.ThreatCount();
+    private final int[] points = new int[2];
+
+    private final long[] failKeys = new long[1 << HASH_BITS];
+    private final int[] failDepth = new int[1 << HASH_BITS];
+
+    private int nodes;
+    private int nodeLimit;
+    private long deadlineNs;
+    private boolean aborted;
+    private volatile boolean stopRequested = false;
+
+    ThreatSolver(BitBoard board) {
+        this.board = board;
+    }
+
+    /**
+     * Searches for a win by continuous fours.
+     * @param attacker Colour to move and win
+     * @param maxDepth Maximum number of attacker moves
+     * @param nodeLimit Node budget
+     * @param deadlineNs Deadline (System.nanoTime), or NO_DEADLINE
+     * @return The first winning move as a cell index, or -1 if none was found
+     */
+    int solveVcf(int attacker, int maxDepth, int nodeLimit, long deadlineNs) {
+        this.nodes = 0;
+        this.nodeLimit = nodeLimit;
+        this.deadlineNs = deadlineNs;
+        this.aborted = false;
+        return vcf(attacker, Math.min(maxDepth, MAX_PLY), 0);
+    }
+
+    /**
+     * Searches for a win by continuous threats (fours and open threes).
+     * @param attacker Colour to move and win
+     * @param maxDepth Maximum number of attacker moves
+     * @param nodeLimit Node budget
+     * @param deadlineNs Deadline (System.nanoTime), or NO_DEADLINE
+     * @return The first winning move as a cell index, or -1 if none was found
+     */
+    int solveVct(int attacker, int maxDepth, int nodeLimit, long deadlineNs) {
+        this.nodes = 0;
+        this.nodeLimit = nodeLimit;
+        this.deadlineNs = deadlineNs;
+        this.aborted = false;
+        return vct(attacker, Math.min(maxDepth, MAX_PLY), 0);
+    }
+
+    /**
+     * Checks whether color can make a four or an open three, which every VCF
+     * or VCT starts with. Far cheaper than a solve, so it screens them out.
+     */
+    boolean hasThreat(int color) {
+        int size = board.frontierSize(2);
+        for (int i = 0; i < size; i++) {
+            int cell = board.frontierCell(2, i);
+            int r = cell / BOARD_SIZE;
+            int c = cell % BOARD_SIZE;
+            boolean four = mayMakeFour(r, c, color);
+            boolean three = mayMakeThree(r, c, color);
+            if (!four && !three) continue;
+            board.probe(r, c, color);
+            boolean threat = four && fivePointsThrough(r, c, color) > 0
+                || three && AI.getThreatCount(board, r, c, color, threatCount, lineBuffer).openThree > 0;
+            board.unprobe(r, c, color);
+            if (threat) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Makes a running or later solve give up as soon as possible, until
+     * clearStop. Safe to call from another thread.
+     */
+    void stop() {
+        stopRequested = true;
+    }
+
+    void clearStop() {
+        stopRequested = false;
+    }
+
+    /**
+     * Forgets the failed positions remembered from earlier solves.
+     */
+    void clear() {
+        java.util.Arrays.fill(failKeys, 0L);
+        java.util.Arrays.fill(failDepth, 0);
+    }
+
+    /**
+     * Gets the number of nodes searched by the last solve.
+     */
+    int getNodes() {
+        return nodes;
+    }
+
+    private int vcf(int attacker, int depth, int ply) {
+        if (depth <= 0 || outOfBudget()) return -1;
+        nodes++;
+
+        int five = findFivePoint(attacker);
+        if (five >= 0) return five;
+
+        // A defender four must be blocked first; two cannot be blocked
+        int threats = findFivePoints(-attacker);
+        if (threats >= 2) return -1;
+
+        long key = board.getHash() ^ (attacker == BLACK ? VCF_BLACK : VCF_WHITE);
+        int slot = (int) key & ((1 << HASH_BITS) - 1);
+        if (failKeys[slot] == key && failDepth[slot] >= depth) return -1;
+
+        int[] moves = moveBuffer[ply];
+        int count;
+        if (threats == 1) {
+            moves[0] = points[0];
+            count = 1;
+        } else {
+            count = collectFours(attacker, moves);
+        }
+
+        for (int i = 0; i < count; i++) {
+            int move = moves[i];
+            if (tryFour(attacker, move, depth, ply)) return move;
+            if (aborted) return -1;
+        }
+
+        failKeys[slot] = key;
+        failDepth[slot] = depth;
+        return -1;
+    }
+
+    /**
+     * Plays an attacking four and the forced reply, then continues the VCF.
+     * @return true if the four leads to a forced win
+     */
+    private boolean tryFour(int attacker, int move, int depth, int ply) {
+        int r = move / BOARD_SIZE;
+        int c = move % BOARD_SIZE;
+        if (attacker == BLACK && AI.isFoul(r, c, board, lineBuffer)) return false;
+
+        board.place(r, c, attacker);
+        int replies = fivePointsThrough(r, c, attacker);
+        boolean win;
+        if (replies == 0) {
+            win = false;
+        } else if (replies >= 2) {
+            win = true;
+        } else {
+            int reply = points[0];
+            int rr = reply / BOARD_SIZE;
+            int rc = reply % BOARD_SIZE;
+            int defender = -attacker;
+            if (defender == BLACK && AI.isFoul(rr, rc, board, lineBuffer)) {
+                win = true;
+            } else {
+                board.place(rr, rc, defender);
+                win = !board.isFiveAt(rr, rc, defender) && vcf(attacker, depth - 1, ply + 1) >= 0;
+                board.remove(rr, rc, defender);
+            }
+        }
+        board.remove(r, c, attacker);
+        return win;
+    }
+
+    // ==================== VCT ====================
+
+    private int vct(int attacker, int depth, int ply) {
+        if (depth <= 0 || outOfBudget()) return -1;
+        nodes++;
+
+        int five = findFivePoint(attacker);
+        if (five >= 0) return five;
+
+        int threats = findFivePoints(-attacker);
+        if (threats >= 2) return -1;
+
+        long key = board.getHash() ^ (attacker == BLACK ? VCT_BLACK : VCT_WHITE);
+        int slot = (int) key & ((1 << HASH_BITS) - 1);
+        if (failKeys[slot] == key && failDepth[slot] >= depth) return -1;
+
+        int[] moves = moveBuffer[ply];
+        int count;
+        if (threats == 1) {
+            moves[0] = points[0];
+            count = 1;
+        } else {
+            count = collectThreats(attacker, moves);
+        }
+
+        for (int i = 0; i < count; i++) {
+            int move = moves[i];
+            if (tryThreat(attacker, move, depth, ply)) return move;
+            if (aborted) return -1;
+        }
+
+        failKeys[slot] = key;
+        failDepth[slot] = depth;
+        return -1;
+    }
+
+    /**
+     * Plays an attacking four or three and checks every defence against it.
+     * @return true if the threat leads to a forced win
+     */
+    private boolean tryThreat(int attacker, int move, int depth, int ply) {
+        int r = move / BOARD_SIZE;
+        int c = move % BOARD_SIZE;
+        if (attacker == BLACK && AI.isFoul(r, c, board, lineBuffer)) return false;
+
+        board.place(r, c, attacker);
+        int replies = fivePointsThrough(r, c, attacker);
+        boolean win;
+        if (replies >= 2) {
+            win = true;
+        } else if (replies == 1) {
+            int reply = points[0];
+            int rr = reply / BOARD_SIZE;
+            int rc = reply % BOARD_SIZE;
+            int defender = -attacker;
+            if (defender == BLACK && AI.isFoul(rr, rc, board, lineBuffer)) {
+                win = true;
+            } else {
+                board.place(rr, rc, defender);
+                win = !board.isFiveAt(rr, rc, defender) && vct(attacker, depth - 1, ply + 1) >= 0;
+                board.remove(rr, rc, defender);
+            }
+        } else if (AI.getThreatCount(board, r, c, attacker, threatCount, lineBuffer).openThree > 0) {
+            win = defendAll(attacker, r, c, depth, ply);
+        } else {
+            win = false;
+        }
+        board.remove(r, c, attacker);
+        return win;
+    }
+
+    /**
+     * Tries every defence against the open three made at (row, col).
+     * @return true if the attacker still wins after each of them
+     */
+    private boolean defendAll(int attacker, int row, int col, int depth, int ply) {
+        int defender = -attacker;
+        int[] defenses = defenseBuffer[ply];
+        int count = collectThreeDefenses(attacker, row, col, defenses);
+        count = appendFours(defender, defenses, count);
+
+        for (int i = 0; i < count; i++) {
+            int d = defenses[i];
+            int dr = d / BOARD_SIZE;
+            int dc = d % BOARD_SIZE;
+            if (defender == BLACK && AI.isFoul(dr, dc, board, lineBuffer)) continue;
+            board.place(dr, dc, defender);
+            boolean refuted = vct(attacker, depth - 1, ply + 1) < 0;
+            board.remove(dr, dc, defender);
+            if (refuted || aborted) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Collects the cells that stop a three: the attacker's four points
+     * on the lines through (row, col).
+     */
+    private int collectThreeDefenses(int attacker, int row, int col, int[] defenses) {
+        int count = 0;
+        for (int dir = 0; dir < 4; dir++) {
+            int p = BitBoard.linePos(dir, row, col);
+            if (Long.bitCount(board.lineMask(attacker, dir, row, col) & window(p)) < 3) continue;
+            for (int i = -4; i <= 4; i++) {
+                int r = row + i * dirRow(dir);
+                int c = col + i * dirCol(dir);
+                if (i == 0 || !BitBoard.isValid(r, c) || !board.isEmpty(r, c)) continue;
+                int cell = r * BOARD_SIZE + c;
+                if (contains(defenses, count, cell)) continue;
+                board.probe(r, c, attacker);
+                boolean four = fivePointsThrough(r, c, attacker) > 0;
+                board.unprobe(r, c, attacker);
+                if (four) defenses[count++] = cell;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Appends the four-making moves of color that are not listed yet.
+     */
+    private int appendFours(int color, int[] moves, int count) {
+        int start = count;
+        int size = board.frontierSize(2);
+        for (int i = 0; i < size; i++) {
+            int cell = board.frontierCell(2, i);
+            int r = cell / BOARD_SIZE;
+            int c = cell % BOARD_SIZE;
+            if (!mayMakeFour(r, c, color) || contains(moves, start, cell)) continue;
+            board.probe(r, c, color);
+            boolean four = fivePointsThrough(r, c, color) > 0;
+            board.unprobe(r, c, color);
+            if (four) moves[count++] = cell;
+        }
+        return count;
+    }
+
+    private static boolean contains(int[] moves, int count, int cell) {
+        for (int i = 0; i < count; i++) {
+            if (moves[i] == cell) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Collects the attacker's fours, then its open threes, each in ascending cell order.
+     * @return The number of moves written to moves
+     */
+    private int collectThreats(int color, int[] moves) {
+        int fours = collectFours(color, moves);
+        int count = fours;
+        int size = board.frontierSize(2);
+        for (int i = 0; i < size; i++) {
+            int cell = board.frontierCell(2, i);
+            int r = cell / BOARD_SIZE;
+            int c = cell % BOARD_SIZE;
+            if (!mayMakeThree(r, c, color) || contains(moves, fours, cell)) continue;
+            board.probe(r, c, color);
+            boolean three = AI.getThreatCount(board, r, c, color, threatCount, lineBuffer).openThree > 0;
+            board.unprobe(r, c, color);
+            if (three) {
+                int j = count++;
+                while (j > fours && moves[j - 1] > cell) {
+                    moves[j] = moves[j - 1];
+                    j--;
+                }
+                moves[j] = cell;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Cheap filter: an open three needs two own stones within three cells on one line.
+     */
+    private boolean mayMakeThree(int row, int col, int color) {
+        for (int dir = 0; dir < 4; dir++) {
+            int p = BitBoard.linePos(dir, row, col);
+            long near = ((1L << (p + 4)) - 1) & ~((1L << Math.max(0, p - 3)) - 1);
+            if (Long.bitCount(board.lineMask(color, dir, row, col) & near) >= 2) return true;
+        }
+        return false;
+    }
+
+    // ==================== THREAT GEOMETRY ====================
+
+    /**
+     * Checks whether color may legally complete five at an empty cell.
+     */
+    private boolean isFivePoint(int row, int col, int color) {
+        if (!board.isFiveAt(row, col, color)) return false;
+        return color != BLACK || !AI.isFoul(row, col, board, lineBuffer);
+    }
+
+    /**
+     * Finds the lowest cell where color completes five.
+     * @return The cell index, or -1
+     */
+    private int findFivePoint(int color) {
+        int best = -1;
+        int size = board.frontierSize(1);
+        for (int i = 0; i < size; i++) {
+            int cell = board.frontierCell(1, i);
+            if ((best < 0 || cell < best) && isFivePoint(cell / BOARD_SIZE, cell % BOARD_SIZE, color)) {
+                best = cell;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Counts the cells where color completes five, stopping at two.
+     * The first ones found are left in points.
+     */
+    private int findFivePoints(int color) {
+        int found = 0;
+        int size = board.frontierSize(1);
+        for (int i = 0; i < size && found < 2; i++) {
+            int cell = board.frontierCell(1, i);
+            if (isFivePoint(cell / BOARD_SIZE, cell % BOARD_SIZE, color)) {
+                points[found++] = cell;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Counts the five points on the lines through a stone, stopping at two.
+     * The first ones found are left in points.
+     */
+    private int fivePointsThrough(int row, int col, int color) {
+        int found = 0;
+        for (int dir = 0; dir < 4 && found < 2; dir++) {
+            int p = BitBoard.linePos(dir, row, col);
+            if (Long.bitCount(board.lineMask(color, dir, row, col) & window(p)) < 4) continue;
+            for (int i = -4; i <= 4 && found < 2; i++) {
+                int r = row + i * dirRow(dir);
+                int c = col + i * dirCol(dir);
+                if (i == 0 || !BitBoard.isValid(r, c) || !board.isEmpty(r, c)) continue;
+                if (isFivePoint(r, c, color)) {
+                    points[found++] = r * BOARD_SIZE + c;
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Collects the attacker's four-making moves in ascending cell order.
+     * @return The number of moves written to moves
+     */
+    private int collectFours(int color, int[] moves) {
+        int count = 0;
+        int size = board.frontierSize(2);
+        for (int i = 0; i < size; i++) {
+            int cell = board.frontierCell(2, i);
+            int r = cell / BOARD_SIZE;
+            int c = cell % BOARD_SIZE;
+            if (!mayMakeFour(r, c, color)) continue;
+            board.probe(r, c, color);
+            boolean four = fivePointsThrough(r, c, color) > 0;
+            board.unprobe(r, c, color);
+            if (four) {
+                int j = count++;
+                while (j > 0 && moves[j - 1] > cell) {
+                    moves[j] = moves[j - 1];
+                    j--;
+                }
+                moves[j] = cell;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Cheap filter: a four needs three own stones within four cells on one line.
+     */
+    private boolean mayMakeFour(int row, int col, int color) {
+        for (int dir = 0; dir < 4; dir++) {
+            int p = BitBoard.linePos(dir, row, col);
+            if (Long.bitCount(board.lineMask(color, dir, row, col) & window(p)) >= 3) return true;
+        }
+        return false;
+    }
+
+    private static long window(int p) {
+        int lo = Math.max(0, p - 4);
+        return ((1L << (p + 5)) - 1) & ~((1L << lo) - 1);
+    }
+
+    private static int dirRow(int dir) {
+        return dir == 0 ? 0 : 1;
+    }
+
+    private static int dirCol(int dir) {
+        switch (dir) {
+            case 0:
+            case 1: return 1;
+            case 2: return 0;
+            default: return -1;
+        }
+    }
+
+    private boolean outOfBudget() {
+        if (!aborted && (nodes >= nodeLimit ||
+                ((nodes & 0xFF) == 0 && (stopRequested
+                    || (deadlineNs != NO_DEADLINE && System.nanoTime() - deadlineNs >= 0))))) {
+            aborted = true;
+        }
+        return aborted;
+    }
+}
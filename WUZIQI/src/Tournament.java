@@ -0,0 +1,685 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Self-play tournament between two engines.
+ *
+ * Engines run as separate processes speaking the Gomocup protocol, so
+ * either side can be a difficulty level of this build or the command line
+ * of another build (e.g. "java -cp ../old/bin Gomocup 2"). Each worker
+ * thread owns one process per engine and plays one game at a time; the
+ * workers run in parallel, by default one per core. A headless Game
+ * referees every game with the ban-hand rules on; an illegal move, a crash
+ * or a move later than the time limit plus TIME_GRACE_MS loses.
+ *
+ * Games come in pairs that start from the same opening with colours
+ * swapped. Openings are read from a book (one line of x,y moves from
+ * black per opening) or are random stones near the centre.
+ *
+ * Every game is written to the results file, and a summary gives the
+ * score and Elo difference of engine A with its 95% interval. With --sprt
+ * the tournament stops as soon as a sequential probability ratio test
+ * accepts elo0 or elo1 (alpha = beta = 0.05).
+ *
+ * Usage: java -cp bin Tournament [--games n] [--concurrency n] [--tc ms]
+ *        [--book file | --plies n] [--seed n] [--memory mb] [--sprt elo0 elo1]
+ *        [--out file] engineA engineB
+ * An engine is a difficulty (0-2) or a quoted command line.
+ */
+public class Tournament {
+
+    private static final int DEFAULT_GAMES = 100;
+    private static final long DEFAULT_TURN_MS = 200;
+    private static final int DEFAULT_RANDOM_PLIES = 4;
+    private static final String DEFAULT_OUT = "tournament.txt";
+
+    // Extra time before a slow move loses, and the time an engine has to answer START
+    private static final long TIME_GRACE_MS = 1_000;
+    private static final long START_TIMEOUT_MS = 30_000;
+    // Random openings are played within this distance of the centre, with at most MAX_RANDOM_PLIES stones
+    private static final int OPENING_RADIUS = 2;
+    private static final int MAX_RANDOM_PLIES = 12;
+    // Error rates of the SPRT, and how often the running result is printed (games)
+    private static final double SPRT_ALPHA = 0.05;
+    private static final double SPRT_BETA = 0.05;
+    private static final int REPORT_INTERVAL = 20;
+
+    // Options
+    private int games = DEFAULT_GAMES;
+    private int concurrency = Runtime.getRuntime().availableProcessors();
+    private long turnMs = DEFAULT_TURN_MS;
+    private int randomPlies = DEFAULT_RANDOM_PLIES;
+    private File book;
+    private long seed = System.nanoTime();
+    private int memoryMb = 0;
+    private boolean sprt = false;
+    private double elo0 = 0;
+    private double elo1 = 10;
+    private File out = new File(DEFAULT_OUT);
+    private final String[] engines = new String[2];
+
+    // Openings, one per game pair, as {row, col, row, col, ...} from black
+    private List<int[]> openings;
+
+    // Results for engine A, guarded by this
+    private int wins;
+    private int draws;
+    private int losses;
+    private int forfeits;
+    private PrintWriter results;
+
+    private final AtomicInteger nextGame = new AtomicInteger();
+    private volatile boolean stopped = false;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Tournament tournament = new Tournament();
+        try {
+            tournament.parseArgs(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: java -cp bin Tournament [--games n] [--concurrency n] [--tc ms]"
+                + " [--book file | --plies n] [--seed n] [--memory mb] [--sprt elo0 elo1]"
+                + " [--out file] engineA engineB");
+            System.exit(2);
+        }
+        tournament.run();
+    }
+
+    private void parseArgs(String[] args) throws IOException {
+        int engineCount = 0;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("--")) {
+                if (engineCount == 2) {
+                    throw new IllegalArgumentException("Too many engines: " + arg);
+                }
+                engines[engineCount++] = arg;
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + arg);
+            }
+            String value = args[++i];
+            switch (arg) {
+                case "--games":
+                    games = Integer.parseInt(value);
+                    break;
+                case "--concurrency":
+                    concurrency = Integer.parseInt(value);
+                    break;
+                case "--tc":
+                    turnMs = Long.parseLong(value);
+                    break;
+                case "--book":
+                    book = new File(value);
+                    break;
+                case "--plies":
+                    randomPlies = Integer.parseInt(value);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(value);
+                    break;
+                case "--memory":
+                    memoryMb = Integer.parseInt(value);
+                    break;
+                case "--sprt":
+                    if (i + 1 >= args.length) {
+                        throw new IllegalArgumentException("--sprt needs elo0 and elo1");
+                    }
+                    sprt = true;
+                    elo0 = Double.parseDouble(value);
+                    elo1 = Double.parseDouble(args[++i]);
+                    break;
+                case "--out":
+                    out = new File(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + arg);
+            }
+        }
+        if (engineCount < 2) {
+            throw new IllegalArgumentException("Two engines are needed");
+        }
+        if (games < 1 || concurrency < 1 || turnMs < 1) {
+            throw new IllegalArgumentException("--games, --concurrency and --tc must be positive");
+        }
+        if (randomPlies < 0 || randomPlies > MAX_RANDOM_PLIES) {
+            throw new IllegalArgumentException("--plies must be between 0 and " + MAX_RANDOM_PLIES);
+        }
+        openings = book != null ? readBook(book) : randomOpenings((games + 1) / 2, new Random(seed));
+    }
+
+    private void run() throws IOException, InterruptedException {
+        results = new PrintWriter(new FileWriter(out), true);
+        results.println("# A = " + engines[0]);
+        results.println("# B = " + engines[1]);
+        results.println("# " + games + " games, " + turnMs + " ms per move, "
+            + (book != null ? "book " + book.getPath() : randomPlies + " random plies, seed " + seed));
+        results.println("# game black white result reason moves");
+        System.out.println("A = " + engines[0] + ", B = " + engines[1] + ", " + games + " games on "
+            + concurrency + " workers, " + turnMs + " ms per move"
+            + (book != null ? "" : ", seed " + seed));
+
+        long start = System.nanoTime();
+        Thread[] workers = new Thread[Math.min(concurrency, games)];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Thread(this::runWorker, "Tournament-" + i);
+            workers[i].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        List<String> summary = summary();
+        summary.add("Time: " + (System.nanoTime() - start) / 1_000_000_000L + " s");
+        for (String line : summary) {
+            System.out.println(line);
+            results.println("# " + line);
+        }
+        results.close();
+        System.out.println("Results written to " + out.getPath());
+    }
+
+    /**
+     * Plays games until all have been started or the SPRT has decided,
+     * keeping one process per engine for all of them.
+     */
+    private void runWorker() {
+        EngineProcess a = new EngineProcess("A", engineCommand(engines[0]));
+        EngineProcess b = new EngineProcess("B", engineCommand(engines[1]));
+        try {
+            int game;
+            while (!stopped && (game = nextGame.getAndIncrement()) < games) {
+                // Even games give A black, odd ones swap colours on the same opening
+                boolean aBlack = game % 2 == 0;
+                int[] opening = openings.get((game / 2) % openings.size());
+                GameRecord record = play(opening, aBlack ? a : b, aBlack ? b : a);
+                record(game + 1, aBlack, record);
+            }
+        } catch (IOException e) {
+            System.err.println("Tournament stopped: " + e.getMessage());
+            stopped = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            a.quit();
+            b.quit();
+        }
+    }
+
+    // ==================== GAMES ====================
+
+    /**
+     * Outcome of one game: the winner (BLACK, WHITE or Game.DRAW), how it
+     * ended, and the moves including the opening.
+     */
+    private static class GameRecord {
+        final int winner;
+        final String reason;
+        final String moves;
+
+        GameRecord(int winner, String reason, String moves) {
+            this.winner = winner;
+            this.reason = reason;
+            this.moves = moves;
+        }
+    }
+
+    /**
+     * Plays one game from an opening.
+     * @throws IOException If an engine cannot be started
+     */
+    private GameRecord play(int[] opening, EngineProcess black, EngineProcess white)
+            throws IOException, InterruptedException {
+        black.newGame(turnMs, memoryMb);
+        white.newGame(turnMs, memoryMb);
+        Game game = new Game();
+        for (int i = 0; i + 1 < opening.length; i += 2) {
+            game.play(opening[i], opening[i + 1]);
+        }
+
+        // Each engine gets the whole position the first time it moves, then only the last move
+        boolean[] informed = new boolean[2];
+        while (!game.isOver()) {
+            int side = game.getSideToMove();
+            EngineProcess mover = side == Game.BLACK ? black : white;
+            int index = side == Game.BLACK ? 0 : 1;
+            if (!informed[index]) {
+                informed[index] = true;
+                if (game.getMoveCount() == 0) {
+                    mover.send("BEGIN");
+                } else {
+                    sendBoard(mover, game, side);
+                }
+            } else {
+                int[] last = game.getLastMove();
+                mover.send("TURN " + last[0] + "," + last[1]);
+            }
+
+            String answer = mover.receive(turnMs + TIME_GRACE_MS);
+            if (answer == null) {
+                String reason = mover.isAlive() ? "time" : "crash";
+                mover.kill();
+                return new GameRecord(-side, reason, moves(game));
+            }
+            int[] move = parseMove(answer);
+            try {
+                if (move == null) {
+                    throw new IllegalArgumentException(answer);
+                }
+                game.play(move[0], move[1]);
+            } catch (IllegalArgumentException e) {
+                return new GameRecord(-side, "illegal", moves(game) + " " + answer.replace(' ', '_'));
+            }
+        }
+        int result = game.getResult();
+        return new GameRecord(result, result == Game.DRAW ? "draw" : "five", moves(game));
+    }
+
+    private static void sendBoard(EngineProcess engine, Game game, int side) {
+        engine.send("BOARD");
+        for (int i = 1; i <= game.getMoveCount(); i++) {
+            Stone stone = game.getStone(i);
+            engine.send(stone.getRow() + "," + stone.getCol() + "," + (stone.getColor() == side ? 1 : 2));
+        }
+        engine.send("DONE");
+    }
+
+    private static String moves(Game game) {
+        StringBuilder moves = new StringBuilder();
+        for (int i = 1; i <= game.getMoveCount(); i++) {
+            Stone stone = game.getStone(i);
+            if (i > 1) {
+                moves.append(' ');
+            }
+            moves.append(stone.getRow()).append(',').append(stone.getCol());
+        }
+        return moves.toString();
+    }
+
+    /**
+     * Parses an answer of the form x,y.
+     * @return {row, col}, or null if it is not a move
+     */
+    private static int[] parseMove(String answer) {
+        String[] fields = answer.split(",");
+        if (fields.length != 2) {
+            return null;
+        }
+        try {
+            return new int[]{Integer.parseInt(fields[0].trim()), Integer.parseInt(fields[1].trim())};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // ==================== OPENINGS ====================
+
+    /**
+     * Reads an opening book: one opening per line as x,y moves from black,
+     * separated by spaces; blank lines and lines starting with # are skipped.
+     */
+    private static List<int[]> readBook(File file) throws IOException {
+        List<int[]> openings = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] moves = line.split("\\s+");
+                int[] opening = new int[moves.length * 2];
+                Game check = new Game();
+                for (int i = 0; i < moves.length; i++) {
+                    int[] move = parseMove(moves[i]);
+                    try {
+                        if (move == null) {
+                            throw new IllegalArgumentException(moves[i]);
+                        }
+                        check.play(move[0], move[1]);
+                    } catch (IllegalArgumentException | IllegalStateException e) {
+                        throw new IllegalArgumentException(file.getPath() + ":" + lineNumber
+                            + ": illegal move " + moves[i]);
+                    }
+                    opening[2 * i] = move[0];
+                    opening[2 * i + 1] = move[1];
+                }
+                openings.add(opening);
+            }
+        }
+        if (openings.isEmpty()) {
+            throw new IllegalArgumentException("No openings in " + file.getPath());
+        }
+        return openings;
+    }
+
+    /**
+     * Creates openings of randomPlies stones near the centre, alternating
+     * from black, with no foul for black and no finished game.
+     */
+    private List<int[]> randomOpenings(int count, Random random) {
+        List<int[]> openings = new ArrayList<>();
+        int center = Game.BOARD_SIZE / 2;
+        int span = 2 * OPENING_RADIUS + 1;
+        while (openings.size() < count) {
+            Game game = new Game();
+            int[] opening = new int[randomPlies * 2];
+            for (int i = 0; i < randomPlies && !game.isOver(); i++) {
+                int row;
+                int col;
+                do {
+                    row = center - OPENING_RADIUS + random.nextInt(span);
+                    col = center - OPENING_RADIUS + random.nextInt(span);
+                } while (game.getCell(row, col) != Game.EMPTY
+                    || (game.getSideToMove() == Game.BLACK && game.isFoulMove(row, col)));
+                game.play(row, col);
+                opening[2 * i] = row;
+                opening[2 * i + 1] = col;
+            }
+            if (!game.isOver()) {
+                openings.add(opening);
+            }
+        }
+        return openings;
+    }
+
+    // ==================== RESULTS ====================
+
+    /**
+     * Counts and writes a finished game, and checks the SPRT.
+     */
+    private synchronized void record(int number, boolean aBlack, GameRecord record) {
+        int aColor = aBlack ? Game.BLACK : Game.WHITE;
+        String result;
+        if (record.winner == Game.DRAW) {
+            draws++;
+            result = "1/2-1/2";
+        } else {
+            if (record.winner == aColor) {
+                wins++;
+            } else {
+                losses++;
+            }
+            result = record.winner == Game.BLACK ? "1-0" : "0-1";
+        }
+        if (!record.reason.equals("five") && !record.reason.equals("draw")) {
+            forfeits++;
+        }
+        results.println(number + " " + (aBlack ? "A B " : "B A ") + result + " " + record.reason + " " + record.moves);
+
+        int played = wins + draws + losses;
+        if (played % REPORT_INTERVAL == 0) {
+            System.out.println(played + " games: " + scoreLine() + ", " + eloLine()
+                + (sprt ? ", LLR " + format(llr()) : ""));
+        }
+        if (sprt && !stopped) {
+            double llr = llr();
+            if (llr <= lowerBound() || llr >= upperBound()) {
+                stopped = true;
+            }
+        }
+    }
+
+    private synchronized List<String> summary() {
+        List<String> lines = new ArrayList<>();
+        lines.add("Games: " + (wins + draws + losses) + ", " + scoreLine()
+            + (forfeits > 0 ? ", " + forfeits + " lost by time, crash or illegal move" : ""));
+        lines.add("Elo A-B: " + eloLine());
+        if (sprt) {
+            double llr = llr();
+            String verdict = llr >= upperBound() ? "H1 accepted (A is at least " + format(elo1) + " Elo stronger)"
+                : llr <= lowerBound() ? "H0 accepted (A is at most " + format(elo0) + " Elo stronger)"
+                : "inconclusive";
+            lines.add("SPRT elo0=" + format(elo0) + " elo1=" + format(elo1) + ": LLR " + format(llr)
+                + " [" + format(lowerBound()) + ", " + format(upperBound()) + "], " + verdict);
+        }
+        return lines;
+    }
+
+    private String scoreLine() {
+        int played = wins + draws + losses;
+        return "A +" + wins + " =" + draws + " -" + losses
+            + String.format(" (%.1f%%)", played > 0 ? 100.0 * score() : 0.0);
+    }
+
+    private String eloLine() {
+        int played = wins + draws + losses;
+        if (played == 0) {
+            return "n/a";
+        }
+        double score = score();
+        // 95% interval of the mean score, from the variance of the game results
+        double margin = 1.96 * Math.sqrt(variance() / played);
+        double low = elo(score - margin);
+        double high = elo(score + margin);
+        return format(elo(score)) + " [" + format(low) + ", " + format(high) + "]";
+    }
+
+    private double score() {
+        int played = wins + draws + losses;
+        return played > 0 ? (wins + 0.5 * draws) / played : 0.5;
+    }
+
+    /**
+     * Gets the variance of one game's result (1, 1/2 or 0) for A.
+     */
+    private double variance() {
+        int played = wins + draws + losses;
+        if (played == 0) {
+            return 0;
+        }
+        double score = score();
+        return (wins * (1 - score) * (1 - score) + draws * (0.5 - score) * (0.5 - score)
+            + losses * score * score) / played;
+    }
+
+    /**
+     * Gets the log-likelihood ratio of elo1 against elo0 for the results so
+     * far, with game results approximated as normally distributed.
+     */
+    private double llr() {
+        int played = wins + draws + losses;
+        double variance = variance();
+        if (played == 0 || variance == 0) {
+            return 0;
+        }
+        double s0 = expectedScore(elo0);
+        double s1 = expectedScore(elo1);
+        double total = wins + 0.5 * draws;
+        return (s1 - s0) * (2 * total - played * (s0 + s1)) / (2 * variance);
+    }
+
+    private static double lowerBound() {
+        return Math.log(SPRT_BETA / (1 - SPRT_ALPHA));
+    }
+
+    private static double upperBound() {
+        return Math.log((1 - SPRT_BETA) / SPRT_ALPHA);
+    }
+
+    private static double expectedScore(double elo) {
+        return 1 / (1 + Math.pow(10, -elo / 400));
+    }
+
+    /**
+     * Gets the Elo difference for a score; infinite at 0 and 1.
+     */
+    private static double elo(double score) {
+        if (score <= 0) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        if (score >= 1) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return -400 * Math.log10(1 / score - 1);
+    }
+
+    private static String format(double value) {
+        // Adding 0.0 turns -0.0 into 0.0
+        return String.format("%.1f", value + 0.0);
+    }
+
+    // ==================== ENGINES ====================
+
+    /**
+     * Gets the command that starts an engine: a difficulty runs this build's
+     * Gomocup front-end, anything else is taken as a command line.
+     */
+    private static List<String> engineCommand(String engine) {
+        if (engine.matches("[0-2]")) {
+            String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+            return Arrays.asList(java, "-cp", System.getProperty("java.class.path"), "Gomocup", engine);
+        }
+        return Arrays.asList(engine.trim().split("\\s+"));
+    }
+
+    /**
+     * An engine process speaking the Gomocup protocol. Its answers are read
+     * on a daemon thread so a silent engine can be timed out; its stderr is
+     * discarded.
+     */
+    private static class EngineProcess {
+
+        // Put in the answer queue when the process closes its stdout; compared by identity
+        private static final String EXIT = new String("EXIT");
+
+        private final String name;
+        private final List<String> command;
+        private Process process;
+        private PrintWriter input;
+        private BlockingQueue<String> answers;
+        private boolean started;
+
+        EngineProcess(String name, List<String> command) {
+            this.name = name;
+            this.command = command;
+        }
+
+        /**
+         * Gets the engine ready for a new game: starts the process if it is
+         * not running, resets it, and sends the game's settings.
+         * @throws IOException If the engine cannot be started or does not answer
+         */
+        void newGame(long turnMs, int memoryMb) throws IOException, InterruptedException {
+            if (process == null || !process.isAlive()) {
+                launch();
+            }
+            // RESTART is optional in the protocol; fall back to START
+            boolean reset = false;
+            if (started) {
+                send("RESTART");
+                reset = "OK".equals(receive(START_TIMEOUT_MS));
+            }
+            if (!reset) {
+                send("START " + Game.BOARD_SIZE);
+                if (!"OK".equals(receive(START_TIMEOUT_MS))) {
+                    throw new IOException("engine " + name + " did not answer START: " + command);
+                }
+                started = true;
+            }
+            send("INFO timeout_turn " + turnMs);
+            send("INFO timeout_match 0");
+            send("INFO rule 4");
+            if (memoryMb > 0) {
+                send("INFO max_memory " + memoryMb * 1024L * 1024L);
+            }
+        }
+
+        private void launch() throws IOException {
+            process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.DISCARD).start();
+            input = new PrintWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.US_ASCII), true);
+            BlockingQueue<String> queue = new LinkedBlockingQueue<>();
+            BufferedReader output = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.US_ASCII));
+            Thread reader = new Thread(() -> {
+                try {
+                    String line;
+                    while ((line = output.readLine()) != null) {
+                        queue.add(line);
+                    }
+                } catch (IOException e) {
+                    // Treated as an exit
+                }
+                queue.add(EXIT);
+            }, "Tournament-engine-" + name);
+            reader.setDaemon(true);
+            reader.start();
+            answers = queue;
+            started = false;
+        }
+
+        void send(String line) {
+            input.println(line);
+        }
+
+        /**
+         * Waits for the next answer, skipping MESSAGE, DEBUG and similar lines.
+         * @return The answer, or null if none came in time or the engine exited
+         */
+        String receive(long timeoutMs) throws InterruptedException {
+            long deadline = System.nanoTime() + timeoutMs * 1_000_000L;
+            while (true) {
+                String line = answers.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (line == null || line == EXIT) {
+                    return null;
+                }
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("MESSAGE") && !line.startsWith("DEBUG")
+                        && !line.startsWith("SUGGEST")) {
+                    return line;
+                }
+            }
+        }
+
+        boolean isAlive() {
+            return process != null && process.isAlive();
+        }
+
+        /**
+         * Ends a process that is in an unknown state, e.g. after a timeout.
+         */
+        void kill() {
+            if (process != null) {
+                process.destroyForcibly();
+                process = null;
+            }
+        }
+
+        /**
+         * Sends END and waits briefly for the process to exit.
+         */
+        void quit() {
+            if (process == null) {
+                return;
+            }
+            send("END");
+            try {
+                if (!process.waitFor(2, TimeUnit.SECONDS)) {
+                    process.destroyForcibly();
+                }
+            } catch (InterruptedException e) {
+                process.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+            process = null;
+        }
+    }
+}
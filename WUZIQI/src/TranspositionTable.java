@@ -0,0 +1,144 @@
+/**
+ * Fixed-size transposition table made of packed long entries.
+ *
+ * The table is a power-of-two array of two-entry buckets. The first slot
+ * of a bucket is depth-preferred, the second is always-replace. Entries
+ * from older searches are recognised by an age counter and replaced
+ * first, so the table never has to be cleared between or during searches.
+ *
+ * Each entry is a key word and a data word. The key word is stored as
+ * key ^ data, so a probe only accepts an entry whose two words were
+ * written together; torn writes from concurrent searches are rejected
+ * instead of returning mixed data.
+ *
+ * Data layout (low to high): score (32 bits), depth (8), bound flag (2),
+ * move (8, cell index row * 15 + col, NO_MOVE if none), age (8), valid (1).
+ */
+class TranspositionTable {
+
+    static final int EXACT = 0;
+    static final int LOWER = 1;
+    static final int UPPER = 2;
+
+    static final int NO_MOVE = 0xFF;
+
+    private static final int DEPTH_SHIFT = 32;
+    private static final int FLAG_SHIFT = 40;
+    private static final int MOVE_SHIFT = 42;
+    private static final int AGE_SHIFT = 50;
+    private static final long VALID = 1L << 63;
+
+    private static final int ENTRY_BYTES = 16;
+
+    private final long[] keys;
+    private final long[] data;
+    private final int bucketMask;
+    private int age = 0;
+
+    /**
+     * Creates a table using about the given amount of memory.
+     * @param sizeMb Table size in megabytes, rounded down to a power of two
+     */
+    TranspositionTable(int sizeMb) {
+        SearchEvents.TableAllocation event = new SearchEvents.TableAllocation();
+        event.begin();
+        long bytes = Math.max(1, sizeMb) * 1024L * 1024L;
+        int entries = Integer.highestOneBit((int) Math.min(bytes / ENTRY_BYTES, 1 << 30));
+        this.keys = new long[entries];
+        this.data = new long[entries];
+        this.bucketMask = entries / 2 - 1;
+        event.sizeMb = sizeMb;
+        event.entries = entries;
+        event.commit();
+    }
+
+    /**
+     * Starts a new search; entries from earlier searches become preferred victims.
+     */
+    void newSearch() {
+        age = (age + 1) & 0xFF;
+    }
+
+    /**
+     * Empties the table and resets the age, as if it had just been created.
+     */
+    void clear() {
+        SearchEvents.TableClear event = new SearchEvents.TableClear();
+        event.begin();
+        java.util.Arrays.fill(keys, 0L);
+        java.util.Arrays.fill(data, 0L);
+        age = 0;
+        event.entries = keys.length;
+        event.commit();
+    }
+
+    /**
+     * Looks up a position.
+     * @return The packed entry, or 0 if the position is not stored
+     */
+    long probe(long key) {
+        int i = bucketIndex(key);
+        long d = data[i];
+        if ((keys[i] ^ d) == key && d != 0) return d;
+        d = data[i + 1];
+        if ((keys[i + 1] ^ d) == key && d != 0) return d;
+        return 0L;
+    }
+
+    /**
+     * Stores a search result.
+     * @param move Best move as a cell index, or NO_MOVE
+     */
+    void store(long key, int score, int depth, int flag, int move) {
+        long d = pack(score, depth, flag, move);
+        int i = bucketIndex(key);
+
+        long old = data[i];
+        boolean sameKey = (keys[i] ^ old) == key;
+        if (old == 0 || sameKey || age(old) != age || depth(old) <= depth) {
+            if (!sameKey && old != 0) {
+                // Demote the previous depth-preferred entry to the always-replace slot
+                keys[i + 1] = keys[i];
+                data[i + 1] = old;
+            }
+            keys[i] = key ^ d;
+            data[i] = d;
+        } else {
+            keys[i + 1] = key ^ d;
+            data[i + 1] = d;
+        }
+    }
+
+    private int bucketIndex(long key) {
+        return ((int) (key ^ (key >>> 32)) & bucketMask) << 1;
+    }
+
+    private long pack(int score, int depth, int flag, int move) {
+        return (score & 0xFFFFFFFFL)
+            | (long) Math.min(depth, 0xFF) << DEPTH_SHIFT
+            | (long) flag << FLAG_SHIFT
+            | (long) (move & 0xFF) << MOVE_SHIFT
+            | (long) age << AGE_SHIFT
+            | VALID;
+    }
+
+    static int score(long entry) {
+        return (int) entry;
+    }
+
+    static int depth(long entry) {
+        return (int) (entry >>> DEPTH_SHIFT) & 0xFF;
+    }
+
+    static int flag(long entry) {
+        return (int) (entry >>> FLAG_SHIFT) & 0x3;
+    }
+
+    static int move(long entry) {
+        return (int) (entry >>> MOVE_SHIFT) & 0xFF;
+    }
+
+    private static int age(long entry) {
+        return (int) (entry >>> AGE_SHIFT) & 0xFF;
+    }
+}
@@ -0,0 +1,129 @@
+import bench.EngineProbe;
+
+/**
+ * Default-package side of bench.EngineProbe: calls the engine's hot paths
+ * directly on one position of the Benchmark suite.
+ */
+public class BenchmarkProbe implements EngineProbe {
+
+    private static final int BOARD_SIZE = AI.BOARD_SIZE;
+    private static final int CANDIDATE_LIMIT = BOARD_SIZE * BOARD_SIZE;
+
+    private int[][] boardState;
+    private Board board;
+    private AI ai;
+    private int color;
+    private int[] cells;
+    private int[] stones;
+
+    @Override
+    public void load(String position, int difficulty) {
+        int index = java.util.Arrays.asList(Benchmark.NAMES).indexOf(position);
+        if (index < 0) {
+            throw new IllegalArgumentException("Unknown position: " + position);
+        }
+        AI.setDifficulty(difficulty);
+        boardState = new int[BOARD_SIZE][BOARD_SIZE];
+        int lastColor = Benchmark.loadPosition(Benchmark.POSITIONS[index], boardState);
+        ai = new AI(boardState, lastColor);
+        color = -lastColor;
+
+        board = new Board();
+        int cellCount = 0;
+        int stoneCount = 0;
+        int[] nearby = new int[BOARD_SIZE * BOARD_SIZE];
+        int[] placed = new int[BOARD_SIZE * BOARD_SIZE];
+        for (int row = 0; row < BOARD_SIZE; row++) {
+            for (int col = 0; col < BOARD_SIZE; col++) {
+                if (boardState[row][col] != AI.EMPTY) {
+                    board.setCell(row, col, boardState[row][col]);
+                    placed[stoneCount++] = row * BOARD_SIZE + col;
+                } else if (hasStoneWithin(row, col, 2)) {
+                    nearby[cellCount++] = row * BOARD_SIZE + col;
+                }
+            }
+        }
+        cells = java.util.Arrays.copyOf(nearby, cellCount);
+        stones = java.util.Arrays.copyOf(placed, stoneCount);
+    }
+
+    private boolean hasStoneWithin(int row, int col, int distance) {
+        for (int r = Math.max(0, row - distance); r <= Math.min(BOARD_SIZE - 1, row + distance); r++) {
+            for (int c = Math.max(0, col - distance); c <= Math.min(BOARD_SIZE - 1, col + distance); c++) {
+                if (boardState[r][c] != AI.EMPTY) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void resetSearch() {
+        ai.clearSearchState();
+    }
+
+    @Override
+    public long search(int maxDepth, boolean threatSolvers) {
+        ai.setThreatSolvers(threatSolvers);
+        ai.getResult(SearchHandle.deterministic(maxDepth, 0, null));
+        return (long) ai.getNodesEvaluated() + ai.getQuiescenceNodes();
+    }
+
+    @Override
+    public long solveThreats() {
+        return ai.solveThreats();
+    }
+
+    @Override
+    public int evaluate() {
+        return ai.evaluate(color);
+    }
+
+    @Override
+    public int candidateMoves() {
+        return ai.getCandidateMoves(color, CANDIDATE_LIMIT, -1, 0);
+    }
+
+    @Override
+    public int quickScores() {
+        int sum = 0;
+        for (int cell : cells) {
+            sum += ai.quickScore(cell / BOARD_SIZE, cell % BOARD_SIZE, color);
+        }
+        return sum;
+    }
+
+    @Override
+    public int foulChecks() {
+        int fouls = 0;
+        for (int cell : cells) {
+            if (AI.isFoulMove(cell / BOARD_SIZE, cell % BOARD_SIZE, boardState)) {
+                fouls++;
+            }
+        }
+        return fouls;
+    }
+
+    @Override
+    public int makeUndoMoves() {
+        int sum = 0;
+        for (int cell : cells) {
+            int row = cell / BOARD_SIZE;
+            int col = cell % BOARD_SIZE;
+            ai.makeMove(row, col, color);
+            sum += ai.evaluate(-color);
+            ai.undoMove(row, col, color);
+        }
+        return sum;
+    }
+
+    @Override
+    public int winChecks() {
+        int sum = 0;
+        for (int cell : stones) {
+            sum += board.checkWinner(cell / BOARD_SIZE, cell % BOARD_SIZE, true);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,85 @@
+package bench;
+
+/**
+ * The engine's hot paths as seen by the benchmarks.
+ *
+ * The engine classes are in the default package, which a named package
+ * cannot import, and JMH does not accept benchmarks in the default package.
+ * BenchmarkProbe therefore lives in the default package, calls the engine
+ * directly (including its package-private methods) and is loaded by name
+ * through this interface.
+ *
+ * A probe holds one position of the benchmark suite. The per-cell methods
+ * run over every empty cell within two of a stone and return a checksum so
+ * the work cannot be optimised away.
+ */
+public interface EngineProbe {
+
+    /**
+     * Creates the probe implementation.
+     */
+    static EngineProbe create() {
+        try {
+            return (EngineProbe) Class.forName("BenchmarkProbe").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("BenchmarkProbe is not on the class path", e);
+        }
+    }
+
+    /**
+     * Loads a position of the suite with a new engine for the side to move.
+     * @param position "opening", "midgame" or "tactical"
+     * @param difficulty 0 easy, 1 medium, 2 hard
+     */
+    void load(String position, int difficulty);
+
+    /**
+     * Clears the engine's table and heuristics so the next search is a fresh one.
+     */
+    void resetSearch();
+
+    /**
+     * Runs a deterministic search (see SearchHandle.deterministic).
+     * @param maxDepth Last iteration, 0 for the difficulty's maximum depth
+     * @param threatSolvers False to skip the threat solvers before the main search
+     * @return Main search nodes, quiescence included
+     */
+    long search(int maxDepth, boolean threatSolvers);
+
+    /**
+     * Runs only the threat solvers a deterministic search starts with.
+     * @return Solver nodes
+     */
+    long solveThreats();
+
+    /**
+     * Evaluates the position for the side to move.
+     */
+    int evaluate();
+
+    /**
+     * Generates and orders the candidate moves for the side to move.
+     * @return The number of candidates
+     */
+    int candidateMoves();
+
+    /**
+     * Computes the ordering score of every nearby cell.
+     */
+    int quickScores();
+
+    /**
+     * Checks every nearby cell for a Black foul through the public board-array API.
+     */
+    int foulChecks();
+
+    /**
+     * Makes and takes back a move on every nearby cell, evaluating in between.
+     */
+    int makeUndoMoves();
+
+    /**
+     * Runs the game board's win check on every stone of the position.
+     */
+    int winChecks();
+}
@@ -0,0 +1,73 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The engine's hot paths one by one, on the Benchmark position suite.
+ * The per-cell benchmarks cover every empty cell within two of a stone,
+ * so their time is per position, not per call.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HotPathBenchmark {
+
+    @Param({"opening", "midgame", "tactical"})
+    public String position;
+
+    @Param({"2"})
+    public int difficulty;
+
+    private EngineProbe probe;
+
+    @Setup
+    public void load() {
+        probe = EngineProbe.create();
+        probe.load(position, difficulty);
+    }
+
+    @Benchmark
+    public int evaluate() {
+        return probe.evaluate();
+    }
+
+    @Benchmark
+    public int getCandidateMoves() {
+        return probe.candidateMoves();
+    }
+
+    @Benchmark
+    public int quickScore() {
+        return probe.quickScores();
+    }
+
+    @Benchmark
+    public int isFoulMove() {
+        return probe.foulChecks();
+    }
+
+    @Benchmark
+    public int makeUndoMove() {
+        return probe.makeUndoMoves();
+    }
+
+    @Benchmark
+    public int checkWinner() {
+        return probe.winChecks();
+    }
+}
@@ -0,0 +1,109 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Full searches (AI.getResult) on the Benchmark position suite.
+ *
+ * Each search is deterministic and starts from a cleared table, so every
+ * invocation does the same work. getResult scores milliseconds per search,
+ * threat solvers included. The solvers are also measured apart from the
+ * main search: mainSearch runs the same search without them and reports
+ * main search and quiescence nodes per second in its "nodes" counter, and
+ * threatSolvers runs only them and reports "solverNodes" per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SearchBenchmark {
+
+    @Param({"opening", "midgame", "tactical"})
+    public String position;
+
+    @Param({"1"})
+    public int difficulty;
+
+    @Param({"4"})
+    public int depth;
+
+    private EngineProbe probe;
+
+    /**
+     * Main search nodes, reported per second next to the primary score.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Nodes {
+        public long nodes;
+
+        @Setup(Level.Iteration)
+        public void clear() {
+            nodes = 0;
+        }
+    }
+
+    /**
+     * Threat solver nodes, reported per second next to the primary score.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class SolverNodes {
+        public long solverNodes;
+
+        @Setup(Level.Iteration)
+        public void clear() {
+            solverNodes = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void load() {
+        probe = EngineProbe.create();
+        probe.load(position, difficulty);
+    }
+
+    @Setup(Level.Invocation)
+    public void resetSearch() {
+        probe.resetSearch();
+    }
+
+    @Benchmark
+    public long getResult() {
+        return probe.search(depth, true);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public long mainSearch(Nodes counter) {
+        long nodes = probe.search(depth, false);
+        counter.nodes += nodes;
+        return nodes;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public long threatSolvers(SolverNodes counter) {
+        long nodes = probe.solveThreats();
+        counter.solverNodes += nodes;
+        return nodes;
+    }
+}